@@ -0,0 +1,5 @@
+-- 学生最后签到时间改为从签到记录的 (student_id, signin_time) 索引查询，students.last_signin_time 不再读写。
+-- ddl-auto=update 不会删除列，该列需要运维手动删除：先备份，确认应用已升级到不再使用该列的版本后执行。
+-- 删除后无法恢复；回滚到旧版本前需重新添加该列（旧版本会在下次签到时重新写入）。
+
+ALTER TABLE students DROP COLUMN last_signin_time;
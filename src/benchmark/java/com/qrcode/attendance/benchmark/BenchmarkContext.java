@@ -0,0 +1,109 @@
+package com.qrcode.attendance.benchmark;
+
+import com.qrcode.attendance.AttendanceApplication;
+import com.qrcode.attendance.entity.*;
+import com.qrcode.attendance.repository.*;
+import com.qrcode.attendance.service.AttendanceService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 基准测试公用的 Spring 上下文：H2 内存库（MySQL 兼容模式）+ 造数
+final class BenchmarkContext {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    record Fixture(Long teachingClassId, Long teacherId, List<String> studentNumbers) {
+    }
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(AttendanceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:attendance-bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "app.attendance.token.secret=benchmark",
+                        "app.attendance.scheduler.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.com.qrcode.attendance=WARN")
+                .run();
+    }
+
+    // 建一个教学班并选入 rosterSize 名学生
+    static Fixture seed(ConfigurableApplicationContext context, int rosterSize) {
+        int seq = SEQUENCE.incrementAndGet();
+
+        Department department = new Department();
+        department.setName("基准测试学院" + seq);
+        department = context.getBean(DepartmentRepository.class).save(department);
+
+        Teacher teacher = new Teacher();
+        teacher.setUsername("bench-teacher-" + seq);
+        teacher.setPassword("password");
+        teacher.setName("基准教师" + seq);
+        teacher.setDepartment(department);
+        teacher.setTeacherId("BT" + seq);
+        teacher = context.getBean(TeacherRepository.class).save(teacher);
+
+        TeachingClass teachingClass = new TeachingClass();
+        teachingClass.setClassName("基准测试教学班" + seq);
+        teachingClass.setCourseName("基准测试");
+        teachingClass.setSemester("2024春");
+        teachingClass.setTeacher(teacher);
+        teachingClass = context.getBean(TeachingClassRepository.class).save(teachingClass);
+
+        List<Student> students = new ArrayList<>(rosterSize);
+        for (int i = 0; i < rosterSize; i++) {
+            String studentNumber = String.format("B%03d%06d", seq, i);
+            Student student = new Student();
+            student.setUsername(studentNumber);
+            student.setPassword("password");
+            student.setName("学生" + i);
+            student.setDepartment(department);
+            student.setStudentId(studentNumber);
+            student.setClassName("基准" + (i / 50) + "班");
+            student.setEnrollmentYear("2024");
+            students.add(student);
+        }
+        students = context.getBean(StudentRepository.class).saveAll(students);
+
+        List<TeachingClassStudent> enrolments = new ArrayList<>(rosterSize);
+        List<String> studentNumbers = new ArrayList<>(rosterSize);
+        for (Student student : students) {
+            TeachingClassStudent enrolment = new TeachingClassStudent();
+            enrolment.setTeachingClass(teachingClass);
+            enrolment.setStudent(student);
+            enrolments.add(enrolment);
+            studentNumbers.add(student.getStudentId());
+        }
+        context.getBean(TeachingClassStudentRepository.class).saveAll(enrolments);
+
+        return new Fixture(teachingClass.getId(), teacher.getId(), studentNumbers);
+    }
+
+    // 创建并开始一次签到，返回开始后的会话
+    static AttendanceSession openSession(ConfigurableApplicationContext context, Fixture fixture) {
+        AttendanceSession session = new AttendanceSession();
+        session.setTeachingClass(context.getBean(TeachingClassRepository.class).findById(fixture.teachingClassId()).orElseThrow());
+        session.setTitle("基准测试签到");
+        session.setStartTime(LocalDateTime.now());
+        session.setEndTime(LocalDateTime.now().plusHours(2));
+
+        AttendanceService attendanceService = context.getBean(AttendanceService.class);
+        AttendanceSession created = attendanceService.createAttendanceSession(session);
+        return attendanceService.startAttendanceSession(created.getId(), fixture.teacherId());
+    }
+}
@@ -0,0 +1,38 @@
+package com.qrcode.attendance.benchmark;
+
+import com.qrcode.attendance.service.QRCodeService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// 二维码生成：cached 反复生成同一签到码（命中图片缓存），uncached 每次换签到码（超出 LRU 容量，必然重新编码）
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QRCodeBenchmark {
+
+    private static final String BASE_URL = "http://localhost:8080/attendance";
+
+    private QRCodeService qrCodeService;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        qrCodeService = new QRCodeService(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String cached() {
+        return qrCodeService.generateAttendanceQRCode("123456", BASE_URL);
+    }
+
+    @Benchmark
+    public String uncached() {
+        counter = (counter + 1) % 900000;
+        return qrCodeService.generateAttendanceQRCode(String.valueOf(100000 + counter), BASE_URL);
+    }
+}
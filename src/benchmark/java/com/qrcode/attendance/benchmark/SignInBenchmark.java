@@ -0,0 +1,59 @@
+package com.qrcode.attendance.benchmark;
+
+import com.qrcode.attendance.dto.SignInResult;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.service.AttendanceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// 一次迭代 = 一个新的签到会话里整个教学班依次签到，测的是签到热路径（准入 + 组提交落库）
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SignInBenchmark.ROSTER_SIZE)
+@Measurement(iterations = 10, batchSize = SignInBenchmark.ROSTER_SIZE)
+@Fork(1)
+public class SignInBenchmark {
+
+    static final int ROSTER_SIZE = 1000;
+
+    private ConfigurableApplicationContext context;
+    private AttendanceService attendanceService;
+    private BenchmarkContext.Fixture fixture;
+
+    private Long sessionId;
+    private String attendanceCode;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        attendanceService = context.getBean(AttendanceService.class);
+        fixture = BenchmarkContext.seed(context, ROSTER_SIZE);
+    }
+
+    @Setup(Level.Iteration)
+    public void openSession() {
+        AttendanceSession session = BenchmarkContext.openSession(context, fixture);
+        sessionId = session.getId();
+        attendanceCode = session.getAttendanceCode();
+        next = 0;
+    }
+
+    @Benchmark
+    public SignInResult signIn() {
+        return attendanceService.signIn(attendanceCode, fixture.studentNumbers().get(next++));
+    }
+
+    @TearDown(Level.Iteration)
+    public void endSession() {
+        attendanceService.endAttendanceSession(sessionId, fixture.teacherId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
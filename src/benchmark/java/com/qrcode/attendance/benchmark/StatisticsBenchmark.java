@@ -0,0 +1,57 @@
+package com.qrcode.attendance.benchmark;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.service.AttendanceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 签到统计：不同规模的教学班，约 80% 的学生已签到
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsBenchmark {
+
+    @Param({"50", "200", "1000", "2000"})
+    private int rosterSize;
+
+    private ConfigurableApplicationContext context;
+    private AttendanceService attendanceService;
+    private Long sessionId;
+    private Long teacherId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        attendanceService = context.getBean(AttendanceService.class);
+
+        BenchmarkContext.Fixture fixture = BenchmarkContext.seed(context, rosterSize);
+        AttendanceSession session = BenchmarkContext.openSession(context, fixture);
+        sessionId = session.getId();
+        teacherId = fixture.teacherId();
+
+        List<String> studentNumbers = fixture.studentNumbers();
+        for (int i = 0; i < studentNumbers.size(); i++) {
+            if (i % 5 != 0) {
+                attendanceService.signIn(session.getAttendanceCode(), studentNumbers.get(i));
+            }
+        }
+        attendanceService.endAttendanceSession(sessionId, teacherId);
+    }
+
+    @Benchmark
+    public Map<String, Object> statistics() {
+        return attendanceService.getAttendanceStatistics(sessionId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.qrcode.attendance.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// 指标端点的访问控制：管理员登录后可在浏览器查看；Prometheus 抓取时带 Authorization: Bearer <抓取令牌>。
+// war 部署在外部容器中时不能使用独立的 management 端口，因此在应用端口上校验
+public class MetricsAccessFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final byte[] scrapeToken;
+
+    // 抓取令牌为空时只允许管理员会话访问
+    public MetricsAccessFilter(String scrapeToken) {
+        this.scrapeToken = scrapeToken == null || scrapeToken.isEmpty()
+                ? null : scrapeToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAdmin(request) || hasScrapeToken(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+        response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+    }
+
+    private static boolean isAdmin(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute("user") != null
+                && "ADMIN".equals(session.getAttribute("userType"));
+    }
+
+    private boolean hasScrapeToken(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (scrapeToken == null || authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        // 常量时间比较，避免按响应时间逐字节猜出令牌
+        return MessageDigest.isEqual(scrapeToken,
+                authorization.substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,99 @@
+package com.qrcode.attendance.config;
+
+import com.qrcode.attendance.service.AttendanceRecordWriteBehind;
+import com.qrcode.attendance.service.AttendanceSessionScheduler;
+import com.qrcode.attendance.service.SignInAdmissionEngine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToDoubleFunction;
+
+// 监控指标：签到链路的状态量、二级缓存命中情况，以及每个请求的 SQL 条数（通过 /actuator/prometheus 暴露，需要认证）
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder attendanceGauges(SignInAdmissionEngine signInAdmissionEngine,
+                                        AttendanceRecordWriteBehind attendanceRecordWriteBehind,
+                                        AttendanceSessionScheduler attendanceSessionScheduler) {
+        return registry -> {
+            Gauge.builder("attendance.sessions.live", signInAdmissionEngine, SignInAdmissionEngine::openSessionCount)
+                    .description("已加载花名册的进行中签到会话数")
+                    .register(registry);
+            Gauge.builder("attendance.writebehind.pending", attendanceRecordWriteBehind, AttendanceRecordWriteBehind::pendingCount)
+                    .description("等待批量写入的签到记录数")
+                    .register(registry);
+            Gauge.builder("attendance.scheduler.pending", attendanceSessionScheduler, AttendanceSessionScheduler::pendingCount)
+                    .description("等待自动开始或结束的会话任务数")
+                    .register(registry);
+        };
+    }
+
+    // 二级缓存各区域的命中、未命中、写入次数和当前条目数，命中率 = hits / (hits + misses)
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+                if (regionStatistics == null) {
+                    continue;
+                }
+                cacheCounter(registry, "hit", region, regionStatistics, CacheRegionStatistics::getHitCount);
+                cacheCounter(registry, "miss", region, regionStatistics, CacheRegionStatistics::getMissCount);
+                cacheCounter(registry, "put", region, regionStatistics, CacheRegionStatistics::getPutCount);
+                Gauge.builder("attendance.cache.l2.size", regionStatistics, CacheRegionStatistics::getElementCountInMemory)
+                        .description("二级缓存区域的条目数")
+                        .tag("region", region)
+                        .register(registry);
+            }
+            FunctionCounter.builder("attendance.cache.query", statistics, Statistics::getQueryCacheHitCount)
+                    .description("查询缓存的访问次数")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("attendance.cache.query", statistics, Statistics::getQueryCacheMissCount)
+                    .description("查询缓存的访问次数")
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+
+    private static void cacheCounter(MeterRegistry registry, String result, String region,
+                                     CacheRegionStatistics regionStatistics,
+                                     ToDoubleFunction<CacheRegionStatistics> count) {
+        FunctionCounter.builder("attendance.cache.l2", regionStatistics, count)
+                .description("二级缓存区域的访问次数")
+                .tag("region", region)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatementMetricsFilter> sqlStatementMetricsFilter(MeterRegistry meterRegistry,
+                                                                                       SqlBudgetEnforcer sqlBudgetEnforcer) {
+        FilterRegistrationBean<SqlStatementMetricsFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatementMetricsFilter(meterRegistry, sqlBudgetEnforcer));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    // /actuator/prometheus 只对管理员会话或带抓取令牌的请求开放，/actuator/health 不受限制
+    @Bean
+    public FilterRegistrationBean<MetricsAccessFilter> metricsAccessFilter(
+            @Value("${app.metrics.scrape-token:}") String scrapeToken) {
+        FilterRegistrationBean<MetricsAccessFilter> registration =
+                new FilterRegistrationBean<>(new MetricsAccessFilter(scrapeToken));
+        registration.addUrlPatterns("/actuator/prometheus", "/actuator/prometheus/*");
+        return registration;
+    }
+}
@@ -0,0 +1,14 @@
+package com.qrcode.attendance.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 方法执行期间经 Hibernate 执行的 SQL 条数上限，超出时由 SqlBudgetEnforcer 记录告警或抛出异常
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SqlBudget {
+
+    int value();
+}
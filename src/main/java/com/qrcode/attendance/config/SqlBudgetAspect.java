@@ -0,0 +1,25 @@
+package com.qrcode.attendance.config;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// @SqlBudget 方法前后取线程计数之差，嵌套调用各自统计（外层包含内层）
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class SqlBudgetAspect {
+
+    private final SqlBudgetEnforcer sqlBudgetEnforcer;
+
+    @Around("@annotation(sqlBudget)")
+    public Object enforce(ProceedingJoinPoint joinPoint, SqlBudget sqlBudget) throws Throwable {
+        long before = SqlStatementCounter.current();
+        Object result = joinPoint.proceed();
+        sqlBudgetEnforcer.check(joinPoint.getSignature().toShortString(),
+                SqlStatementCounter.current() - before, sqlBudget.value());
+        return result;
+    }
+}
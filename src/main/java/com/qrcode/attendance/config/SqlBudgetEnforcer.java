@@ -0,0 +1,36 @@
+package com.qrcode.attendance.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// SQL 预算检查：请求级别用统一上限，方法级别用 @SqlBudget 标注的上限；
+// 默认只记录告警，测试环境配置为直接失败
+@Component
+@Slf4j
+public class SqlBudgetEnforcer {
+
+    private final int requestBudget;
+    private final boolean failOnExceed;
+
+    public SqlBudgetEnforcer(@Value("${app.sql-budget.request-max:50}") int requestBudget,
+                             @Value("${app.sql-budget.fail-on-exceed:false}") boolean failOnExceed) {
+        this.requestBudget = requestBudget;
+        this.failOnExceed = failOnExceed;
+    }
+
+    public void checkRequest(String method, String uri, long used) {
+        check(method + " " + uri, used, requestBudget);
+    }
+
+    public void check(String scope, long used, int budget) {
+        if (used <= budget) {
+            return;
+        }
+        String message = "SQL 条数超出预算 - " + scope + ": " + used + " > " + budget;
+        if (failOnExceed) {
+            throw new SqlBudgetExceededException(message);
+        }
+        log.warn(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.qrcode.attendance.config;
+
+// SQL 条数超出预算（只在 app.sql-budget.fail-on-exceed=true 时抛出，测试环境用来拦住 N+1）
+public class SqlBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SqlBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.qrcode.attendance.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Hibernate 每准备一条 SQL 调用一次，按线程计数；由 Hibernate 通过类名实例化，计数器只能是静态的。
+// 只统计经过 Hibernate 的语句，JdbcTemplate 直接执行的（批量写入、导出）不在其中
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long current() {
+        return COUNT.get()[0];
+    }
+}
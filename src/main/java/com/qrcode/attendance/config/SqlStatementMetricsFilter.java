@@ -0,0 +1,48 @@
+package com.qrcode.attendance.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// 每个请求执行的 SQL 条数，按请求方法和路由模板（不是实际路径，避免标签爆炸）记录分布，并检查请求级预算
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final SqlBudgetEnforcer sqlBudgetEnforcer;
+
+    public SqlStatementMetricsFilter(MeterRegistry meterRegistry, SqlBudgetEnforcer sqlBudgetEnforcer) {
+        this.meterRegistry = meterRegistry;
+        this.sqlBudgetEnforcer = sqlBudgetEnforcer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DistributionSummary.builder("http.server.requests.sql.statements")
+                    .description("每个请求执行的 SQL 语句数")
+                    .tag("method", request.getMethod())
+                    .tag("uri", routeOf(request))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(SqlStatementCounter.current());
+        }
+        // 请求本身失败时不再叠加预算异常
+        sqlBudgetEnforcer.checkRequest(request.getMethod(), routeOf(request), SqlStatementCounter.current());
+    }
+
+    private static String routeOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
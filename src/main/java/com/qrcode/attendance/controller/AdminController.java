@@ -1,18 +1,34 @@
 package com.qrcode.attendance.controller;
 
+import com.qrcode.attendance.dto.AttendanceHistoryRow;
+import com.qrcode.attendance.dto.KeysetPage;
 import com.qrcode.attendance.entity.*;
 import com.qrcode.attendance.repository.*;
+import com.qrcode.attendance.service.AttendanceCodeAllocator;
+import com.qrcode.attendance.service.AttendanceExportService;
+import com.qrcode.attendance.service.AttendanceService;
+import com.qrcode.attendance.service.StudentSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/admin")
@@ -24,6 +40,10 @@ public class AdminController {
     private final StudentRepository studentRepository;
     private final DepartmentRepository departmentRepository;
     private final AdminRepository adminRepository;
+    private final AttendanceCodeAllocator attendanceCodeAllocator;
+    private final StudentSearchIndex studentSearchIndex;
+    private final AttendanceExportService attendanceExportService;
+    private final AttendanceService attendanceService;
 
     // 管理员仪表板
     @GetMapping("/dashboard")
@@ -42,16 +62,78 @@ public class AdminController {
         model.addAttribute("teacherCount", teacherCount);
         model.addAttribute("studentCount", studentCount);
         model.addAttribute("departmentCount", departmentCount);
+        model.addAttribute("departments", departmentRepository.findAllByOrderByName());
         model.addAttribute("admin", user);
 
         return "admin/dashboard";
     }
 
+    // 签到码分配统计
+    @GetMapping("/metrics/attendance-codes")
+    @ResponseBody
+    public Map<String, Object> attendanceCodeMetrics(HttpSession session) {
+        Object user = session.getAttribute("user");
+        if (user == null || !"ADMIN".equals(session.getAttribute("userType"))) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "未登录");
+            return error;
+        }
+        return attendanceCodeAllocator.getMetrics();
+    }
+
+    // 签到记录导出：按教学班、院系（学生所属）或学期，三选一
+    @GetMapping("/exports/attendance")
+    @ResponseBody
+    public WebAsyncTask<Void> exportAttendance(
+            @RequestParam(required = false) Long teachingClassId,
+            @RequestParam(required = false) Long departmentId,
+            @RequestParam(required = false) String semester,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpSession session,
+            HttpServletResponse response) throws IOException {
+
+        Object user = session.getAttribute("user");
+        if (user == null || !"ADMIN".equals(session.getAttribute("userType"))) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return null;
+        }
+
+        AttendanceExportService.Scope scope;
+        if (teachingClassId != null) {
+            scope = AttendanceExportService.Scope.teachingClass(teachingClassId);
+        } else if (departmentId != null) {
+            scope = AttendanceExportService.Scope.department(departmentId);
+        } else if (semester != null && !semester.isBlank()) {
+            scope = AttendanceExportService.Scope.semester(semester.trim());
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        AttendanceExportService.Format exportFormat = AttendanceExportService.Format.of(format);
+        // 超时只作用于本次导出请求
+        return new WebAsyncTask<>(attendanceExportService.getTimeoutMillis(), () -> {
+            response.setContentType(exportFormat.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(attendanceExportService.fileName(scope, exportFormat), StandardCharsets.UTF_8)
+                    .build().toString());
+            attendanceExportService.export(scope, exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
+
     // ========== 教师管理 ==========
 
-    // 教师列表
+    // 教师列表（服务端筛选 + 键集分页）
     @GetMapping("/teachers")
-    public String teacherList(Model model, HttpSession session) {
+    public String teacherList(@RequestParam(required = false) Long department,
+                              @RequestParam(required = false) String status,
+                              @RequestParam(required = false) String keyword,
+                              @RequestParam(defaultValue = "teacherId") String sort,
+                              @RequestParam(defaultValue = "asc") String dir,
+                              @RequestParam(required = false) String cursor,
+                              @RequestParam(defaultValue = "50") int size,
+                              Model model, HttpSession session) {
         try {
             // 检查是否登录
             Object user = session.getAttribute("user");
@@ -59,19 +141,27 @@ public class AdminController {
                 return "redirect:/login";
             }
 
-            // 获取所有教师
-            List<Teacher> teachers = teacherRepository.findAll();
+            // 当前页教师
+            String statusFilter = normalizeStatus(status);
+            String keywordFilter = normalizeKeyword(keyword);
+            KeysetPage<Teacher> page = teacherRepository.findPage(department, statusFilter, keywordFilter,
+                    sort, "desc".equalsIgnoreCase(dir), cursor, clampPageSize(size));
 
             // 获取所有院系（用于显示）
-            List<Department> departments = departmentRepository.findAll();
+            List<Department> departments = departmentRepository.findAllByOrderByName();
 
-            long activeCount = teachers.stream().filter(s -> "ACTIVE".equals(s.getStatus())).count();
-            long inactiveCount = teachers.stream().filter(s -> "INACTIVE".equals(s.getStatus())).count();
+            // 各状态人数（一条 GROUP BY）
+            Map<String, Long> statusCounts = toStatusCounts(teacherRepository.countGroupByStatus(
+                    department, KeysetSpecifications.likePattern(keywordFilter)));
 
             // 添加到模型
-            model.addAttribute("activeCount", activeCount);
-            model.addAttribute("inactiveCount", inactiveCount);
-            model.addAttribute("teachers", teachers);
+            model.addAttribute("activeCount", statusCounts.getOrDefault("ACTIVE", 0L));
+            model.addAttribute("inactiveCount", statusCounts.getOrDefault("INACTIVE", 0L));
+            model.addAttribute("totalCount", totalCount(statusCounts, null));
+            model.addAttribute("matchedCount", totalCount(statusCounts, statusFilter));
+            model.addAttribute("teachers", page.content());
+            model.addAttribute("page", page);
+            addFilterAttributes(model, department, statusFilter, keywordFilter, sort, dir);
             model.addAttribute("departments", departments);
             model.addAttribute("admin", user);
 
@@ -113,7 +203,7 @@ public class AdminController {
             }
 
             // 获取所有院系
-            List<Department> departments = departmentRepository.findAll();
+            List<Department> departments = departmentRepository.findAllByOrderByName();
             model.addAttribute("departments", departments);
             model.addAttribute("admin", user);
 
@@ -193,7 +283,7 @@ public class AdminController {
 
         Teacher teacher = teacherRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("教师不存在"));
-        List<Department> departments = departmentRepository.findAll();
+        List<Department> departments = departmentRepository.findAllByOrderByName();
 
         model.addAttribute("teacher", teacher);
         model.addAttribute("departments", departments);
@@ -287,28 +377,42 @@ public class AdminController {
 
     // ========== 学生管理 ==========
 
-    // 学生列表
+    // 学生列表（服务端筛选 + 键集分页）
     @GetMapping("/students")
-    public String studentList(Model model, HttpSession session) {
+    public String studentList(@RequestParam(required = false) Long department,
+                              @RequestParam(required = false) String status,
+                              @RequestParam(required = false) String keyword,
+                              @RequestParam(defaultValue = "studentId") String sort,
+                              @RequestParam(defaultValue = "asc") String dir,
+                              @RequestParam(required = false) String cursor,
+                              @RequestParam(defaultValue = "50") int size,
+                              Model model, HttpSession session) {
         // 检查是否登录
         Object user = session.getAttribute("user");
         if (user == null || !"ADMIN".equals(session.getAttribute("userType"))) {
             return "redirect:/login";
         }
 
-        List<Student> students = studentRepository.findAll();
-        List<Department> departments = departmentRepository.findAll();
+        String statusFilter = normalizeStatus(status);
+        String keywordFilter = normalizeKeyword(keyword);
+        KeysetPage<Student> page = studentRepository.findPage(department, statusFilter, keywordFilter,
+                sort, "desc".equalsIgnoreCase(dir), cursor, clampPageSize(size));
+        List<Department> departments = departmentRepository.findAllByOrderByName();
 
-        long activeCount = students.stream().filter(s -> "ACTIVE".equals(s.getStatus())).count();
-        long inactiveCount = students.stream().filter(s -> "INACTIVE".equals(s.getStatus())).count();
-        long graduatedCount = students.stream().filter(s -> "GRADUATED".equals(s.getStatus())).count();
+        // 各状态人数（一条 GROUP BY）
+        Map<String, Long> statusCounts = toStatusCounts(studentRepository.countGroupByStatus(
+                department, KeysetSpecifications.likePattern(keywordFilter)));
 
-        model.addAttribute("students", students);
+        model.addAttribute("students", page.content());
+        model.addAttribute("page", page);
         model.addAttribute("departments", departments);
         model.addAttribute("admin", user);
-        model.addAttribute("activeCount", activeCount);
-        model.addAttribute("inactiveCount", inactiveCount);
-        model.addAttribute("graduatedCount", graduatedCount);
+        model.addAttribute("activeCount", statusCounts.getOrDefault("ACTIVE", 0L));
+        model.addAttribute("inactiveCount", statusCounts.getOrDefault("INACTIVE", 0L));
+        model.addAttribute("graduatedCount", statusCounts.getOrDefault("GRADUATED", 0L));
+        model.addAttribute("totalCount", totalCount(statusCounts, null));
+        model.addAttribute("matchedCount", totalCount(statusCounts, statusFilter));
+        addFilterAttributes(model, department, statusFilter, keywordFilter, sort, dir);
 
         return "admin/student-list";
     }
@@ -322,7 +426,7 @@ public class AdminController {
             return "redirect:/login";
         }
 
-        List<Department> departments = departmentRepository.findAll();
+        List<Department> departments = departmentRepository.findAllByOrderByName();
         model.addAttribute("departments", departments);
         model.addAttribute("admin", user);
 
@@ -377,6 +481,7 @@ public class AdminController {
             student.setStatus("ACTIVE");
 
             studentRepository.save(student);
+            studentSearchIndex.index(student);
 
             redirectAttributes.addFlashAttribute("success", "学生添加成功！");
             return "redirect:/admin/students";
@@ -399,7 +504,7 @@ public class AdminController {
 
         Student student = studentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("学生不存在"));
-        List<Department> departments = departmentRepository.findAll();
+        List<Department> departments = departmentRepository.findAllByOrderByName();
 
         model.addAttribute("student", student);
         model.addAttribute("departments", departments);
@@ -460,6 +565,7 @@ public class AdminController {
             student.setStatus(status);
 
             studentRepository.save(student);
+            studentSearchIndex.index(student);
 
             redirectAttributes.addFlashAttribute("success", "学生信息更新成功！");
             return "redirect:/admin/students";
@@ -471,6 +577,34 @@ public class AdminController {
         }
     }
 
+    // 学生签到历史（跨教学班，按签到时间倒序），cursor 为上一页返回的 nextCursor
+    @GetMapping("/students/{id}/attendance-history")
+    @ResponseBody
+    public Map<String, Object> studentAttendanceHistory(@PathVariable Long id,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "50") int size,
+                                                        HttpSession session) {
+        Map<String, Object> result = new HashMap<>();
+        Object user = session.getAttribute("user");
+        if (user == null || !"ADMIN".equals(session.getAttribute("userType"))) {
+            result.put("error", "未登录");
+            return result;
+        }
+        if (!studentRepository.existsById(id)) {
+            result.put("error", "学生不存在");
+            return result;
+        }
+
+        KeysetPage<AttendanceHistoryRow> page = attendanceService.getAttendanceHistory(id, cursor, clampPageSize(size));
+        result.put("records", page.content());
+        result.put("nextCursor", page.nextCursor());
+        result.put("hasNext", page.hasNext());
+        if (cursor == null || cursor.isEmpty()) {
+            result.put("lastSigninTime", attendanceService.getLastSigninTime(id));
+        }
+        return result;
+    }
+
     // 删除学生
     @GetMapping("/students/delete/{id}")
     public String deleteStudent(@PathVariable Long id, HttpSession session,
@@ -483,6 +617,7 @@ public class AdminController {
             }
 
             studentRepository.deleteById(id);
+            studentSearchIndex.remove(id);
             redirectAttributes.addFlashAttribute("success", "学生删除成功！");
 
         } catch (Exception e) {
@@ -508,7 +643,7 @@ public class AdminController {
             }
 
             // 获取所有院系
-            List<Department> departments = departmentRepository.findAll();
+            List<Department> departments = departmentRepository.findAllByOrderByName();
 
             model.addAttribute("departments", departments);
             model.addAttribute("admin", user);
@@ -638,4 +773,43 @@ public class AdminController {
 
         return "redirect:/admin/departments";
     }
-}
\ No newline at end of file
+
+    // ========== 列表分页辅助 ==========
+
+    private static String normalizeStatus(String status) {
+        return status == null || status.isEmpty() || "ALL".equals(status) ? null : status;
+    }
+
+    private static String normalizeKeyword(String keyword) {
+        return keyword == null || keyword.isBlank() ? null : keyword.trim();
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(10, Math.min(size, 200));
+    }
+
+    private static Map<String, Long> toStatusCounts(List<Object[]> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    // status 为空时返回总数，否则返回该状态的人数
+    private static long totalCount(Map<String, Long> statusCounts, String status) {
+        if (status != null) {
+            return statusCounts.getOrDefault(status, 0L);
+        }
+        return statusCounts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static void addFilterAttributes(Model model, Long department, String status, String keyword,
+                                            String sort, String dir) {
+        model.addAttribute("department", department);
+        model.addAttribute("status", status);
+        model.addAttribute("keyword", keyword);
+        model.addAttribute("sort", sort);
+        model.addAttribute("dir", dir);
+    }
+}
@@ -1,8 +1,10 @@
 package com.qrcode.attendance.controller;
 
-import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.dto.AttendanceSessionSnapshot;
+import com.qrcode.attendance.dto.SignInResult;
 import com.qrcode.attendance.service.AttendanceService;
 import com.qrcode.attendance.service.AttendanceSessionService;
+import com.qrcode.attendance.service.AttendanceTokenService;
 import com.qrcode.attendance.service.QRCodeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +26,7 @@ public class AttendanceController {
 
     private final AttendanceService attendanceService;
     private final QRCodeService qrCodeService;
+    private final AttendanceTokenService attendanceTokenService;
 
     // 注入签到会话的 Service/Repository（根据你的项目结构调整）
     @Autowired
@@ -31,11 +34,14 @@ public class AttendanceController {
 
     // 学生签到页面
     @GetMapping("/signin")
-    public String signinPage(@RequestParam String code, Model model) {
+    public String signinPage(@RequestParam String code,
+                             @RequestParam(name = "t", required = false) String token,
+                             @RequestParam(name = "f", required = false) String formToken,
+                             Model model) {
         try {
             // ========== 核心修改1：查询签到会话数据 ==========
             // 根据签到码查询对应的会话（关键！之前缺失这一步）
-            AttendanceSession sessionInfo = attendanceSessionService.getByAttendanceCode(code);
+            AttendanceSessionSnapshot sessionInfo = attendanceSessionService.getByAttendanceCode(code);
 
             // ========== 核心修改2：传递 sessionInfo 到前端 ==========
             model.addAttribute("sessionInfo", sessionInfo); // 前端依赖这个参数判断是否有效
@@ -53,6 +59,14 @@ public class AttendanceController {
                 model.addAttribute("error",
                         "签到状态异常：" + ("ENDED".equals(sessionInfo.getStatus()) ? "签到已结束" : "签到未开始")
                 );
+            } else if (attendanceTokenService.validate(sessionInfo.getId(), token)) {
+                // 扫码时校验轮换令牌，之后提交只校验表单令牌（有独立的有效期）
+                model.addAttribute("token", attendanceTokenService.issueFormToken(sessionInfo.getId()));
+            } else if (formToken != null && attendanceTokenService.validateFormToken(sessionInfo.getId(), formToken)) {
+                // 签到失败后"重新签到"带回原表单令牌，不延长有效期
+                model.addAttribute("token", formToken);
+            } else {
+                model.addAttribute("error", "二维码已过期，请重新扫描教师屏幕上的二维码");
             }
 
             return "attendance/signin";
@@ -71,6 +85,7 @@ public class AttendanceController {
     public String signin(
             @RequestParam String attendanceCode,
             @RequestParam String studentId,
+            @RequestParam(required = false) String token,
             HttpServletRequest request,
             Model model) {
 
@@ -79,20 +94,31 @@ public class AttendanceController {
             String ipAddress = getClientIpAddress(request);
             String userAgent = request.getHeader("User-Agent");
 
+            // 校验扫码时签发的表单令牌：只重新计算 HMAC，会话信息取自缓存，不访问数据库
+            AttendanceSessionSnapshot sessionInfo = attendanceSessionService.getByAttendanceCode(attendanceCode);
+            if (sessionInfo != null && !attendanceTokenService.validateFormToken(sessionInfo.getId(), token)) {
+                throw new RuntimeException("签到页面已过期，请重新扫描");
+            }
+
             // 执行签到
-            var record = attendanceService.signIn(attendanceCode, studentId);
+            SignInResult result = attendanceService.signIn(attendanceCode, studentId);
 
+            // 重复提交返回的是首次签到的记录
             model.addAttribute("success", true);
-            model.addAttribute("message", "签到成功！");
+            model.addAttribute("repeated", result.repeated());
+            model.addAttribute("pending", result.pending());
+            model.addAttribute("message", result.pending() ? "签到正在处理中"
+                    : result.repeated() ? "您已经签到过了" : "签到成功！");
             model.addAttribute("studentId", studentId);
-            model.addAttribute("signinTime", record.getSigninTime());
-            model.addAttribute("status", record.getStatus());
+            model.addAttribute("signinTime", result.signinTime());
+            model.addAttribute("status", result.status());
 
         } catch (Exception e) {
             log.error("签到失败", e);
             model.addAttribute("success", false);
             model.addAttribute("error", e.getMessage());
             model.addAttribute("attendanceCode", attendanceCode);
+            model.addAttribute("token", token);
         }
 
         return "attendance/signin-result";
@@ -1,17 +1,38 @@
 package com.qrcode.attendance.controller;
 
 import com.qrcode.attendance.config.QrCodeConfig;
+import com.qrcode.attendance.config.SqlBudget;
+import com.qrcode.attendance.dto.AttendanceMatrix;
+import com.qrcode.attendance.dto.BulkEnrollmentReport;
+import com.qrcode.attendance.dto.StudentSummary;
 import com.qrcode.attendance.entity.*;
 import com.qrcode.attendance.repository.*;
 import com.qrcode.attendance.service.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -29,10 +50,10 @@ public class TeacherController {
     private final TeachingClassRepository teachingClassRepository;
     private final AttendanceSessionRepository attendanceSessionRepository;
     private final StudentRepository studentRepository;
-    private final TeachingClassStudentRepository teachingClassStudentRepository;
 
     // 教师仪表板
     @GetMapping("/dashboard")
+    @SqlBudget(6)
     public String dashboard(Model model, HttpSession session) {
         // 检查是否登录
         Object user = session.getAttribute("user");
@@ -46,8 +67,8 @@ public class TeacherController {
         long teachingClassCount = teachingClassRepository.countByTeacher(teacher);
         List<TeachingClass> teachingClasses = teachingClassService.getTeachingClassesByTeacher(teacher);
 
-        long totalStudents = teachingClasses.stream()
-                .mapToLong(tc -> teachingClassStudentRepository.countActiveStudentsByTeachingClass(tc))
+        long totalStudents = attendanceService.getTotalStudentCountByClasses(teachingClasses).values().stream()
+                .mapToLong(Integer::longValue)
                 .sum();
 
         // 获取进行中的签到
@@ -59,6 +80,7 @@ public class TeacherController {
         model.addAttribute("teachingClasses", teachingClasses);
         model.addAttribute("activeSessions", activeSessions);
         model.addAttribute("activeSessionCount", activeSessions.size());
+        model.addAttribute("activeSessionSummaries", attendanceSessionSummaryService.getSummaries(activeSessions));
         model.addAttribute("totalStudents", totalStudents);
 
         return "teacher/dashboard";
@@ -236,6 +258,7 @@ public class TeacherController {
 
     // 查看教学班学生
     @GetMapping("/teaching-classes/{id}/students")
+    @SqlBudget(2)
     public String teachingClassStudents(@PathVariable Long id, Model model, HttpSession session) {
         // 检查是否登录
         Object user = session.getAttribute("user");
@@ -247,7 +270,7 @@ public class TeacherController {
         TeachingClass teachingClass = teachingClassRepository.findByIdAndTeacher(id, teacher)
                 .orElseThrow(() -> new RuntimeException("教学班不存在或无权访问"));
 
-        List<Student> students = teachingClassService.getStudentsInTeachingClass(teachingClass);
+        List<TeachingClassRosterEntry> students = teachingClassService.getStudentsInTeachingClass(teachingClass);
 
         model.addAttribute("teacher", teacher);
         model.addAttribute("teachingClass", teachingClass);
@@ -260,6 +283,7 @@ public class TeacherController {
     @GetMapping("/teaching-classes/{id}/students/add")
     public String addStudentToTeachingClassPage(@PathVariable Long id,
                                                 @RequestParam(required = false) String keyword,
+                                                @RequestParam(defaultValue = "0") int page,
                                                 Model model, HttpSession session) {
         // 检查是否登录
         Object user = session.getAttribute("user");
@@ -271,12 +295,13 @@ public class TeacherController {
         TeachingClass teachingClass = teachingClassRepository.findByIdAndTeacher(id, teacher)
                 .orElseThrow(() -> new RuntimeException("教学班不存在或无权访问"));
 
-        List<Student> availableStudents = teachingClassService
-                .searchStudentsNotInTeachingClass(teachingClass, keyword);
+        Page<StudentSummary> studentPage = teachingClassService.searchStudentsNotInTeachingClass(
+                teachingClass, keyword, PageRequest.of(Math.max(page, 0), 60));
 
         model.addAttribute("teacher", teacher);
         model.addAttribute("teachingClass", teachingClass);
-        model.addAttribute("availableStudents", availableStudents);
+        model.addAttribute("availableStudents", studentPage.getContent());
+        model.addAttribute("studentPage", studentPage);
         model.addAttribute("keyword", keyword);
 
         return "teacher/teaching-class-add-student";
@@ -309,6 +334,131 @@ public class TeacherController {
         }
     }
 
+    // 批量导入学生：上传 CSV（第一列为学号）或提交学号列表，返回逐行结果
+    @PostMapping("/teaching-classes/{classId}/students/import")
+    @ResponseBody
+    public ResponseEntity<?> importStudentsToTeachingClass(
+            @PathVariable Long classId,
+            @RequestParam(required = false) MultipartFile file,
+            @RequestParam(required = false) String studentNumbers,
+            HttpSession session) {
+
+        // 检查是否登录
+        Object user = session.getAttribute("user");
+        if (user == null || !"TEACHER".equals(session.getAttribute("userType"))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Teacher teacher = (Teacher) user;
+        if (teachingClassRepository.findByIdAndTeacher(classId, teacher).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> error = new HashMap<>();
+        try {
+            List<String> numbers = new ArrayList<>();
+            if (file != null && !file.isEmpty()) {
+                numbers.addAll(TeachingClassService.parseStudentNumbersCsv(
+                        new String(file.getBytes(), StandardCharsets.UTF_8)));
+            }
+            if (studentNumbers != null) {
+                numbers.addAll(TeachingClassService.parseStudentNumbersText(studentNumbers));
+            }
+            if (numbers.isEmpty()) {
+                error.put("error", "请上传 CSV 文件或填写学号");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            BulkEnrollmentReport report = teachingClassService.bulkEnroll(classId, numbers);
+            return ResponseEntity.ok(report);
+
+        } catch (IOException e) {
+            log.error("读取导入文件失败", e);
+            error.put("error", "读取文件失败：" + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            log.error("批量导入学生失败", e);
+            error.put("error", "导入失败：" + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // 导出本教学班的签到记录（CSV / XLSX）
+    @GetMapping("/teaching-classes/{classId}/attendance/export")
+    @ResponseBody
+    public WebAsyncTask<Void> exportTeachingClassAttendance(
+            @PathVariable Long classId,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpSession session,
+            HttpServletResponse response) throws IOException {
+
+        // 检查是否登录
+        Object user = session.getAttribute("user");
+        if (user == null || !"TEACHER".equals(session.getAttribute("userType"))) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return null;
+        }
+
+        Teacher teacher = (Teacher) user;
+        if (teachingClassRepository.findByIdAndTeacher(classId, teacher).isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+
+        AttendanceExportService.Scope scope = AttendanceExportService.Scope.teachingClass(classId);
+        AttendanceExportService.Format exportFormat = AttendanceExportService.Format.of(format);
+        // 超时只作用于本次导出请求
+        return new WebAsyncTask<>(attendanceExportService.getTimeoutMillis(), () -> {
+            response.setContentType(exportFormat.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(attendanceExportService.fileName(scope, exportFormat), StandardCharsets.UTF_8)
+                    .build().toString());
+            attendanceExportService.export(scope, exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
+
+    // 学生 × 签到会话 出勤矩阵（JSON / CSV），附每个学生和每次签到的合计
+    @GetMapping("/teaching-classes/{classId}/attendance/matrix")
+    public ResponseEntity<?> getAttendanceMatrix(
+            @PathVariable Long classId,
+            @RequestParam(defaultValue = "json") String format,
+            HttpSession session) throws IOException {
+
+        // 检查是否登录
+        Object user = session.getAttribute("user");
+        if (user == null || !"TEACHER".equals(session.getAttribute("userType"))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Teacher teacher = (Teacher) user;
+        Optional<TeachingClass> teachingClassOpt = teachingClassRepository.findByIdAndTeacher(classId, teacher);
+        if (teachingClassOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        AttendanceMatrix matrix = attendanceService.getAttendanceMatrix(classId);
+        if (!"csv".equalsIgnoreCase(format)) {
+            Map<String, Object> result = matrix.toMap();
+            result.put("teachingClassId", classId);
+            result.put("teachingClassName", teachingClassOpt.get().getClassName());
+            return ResponseEntity.ok(result);
+        }
+
+        // 带 BOM，Excel 直接打开不乱码
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + matrix.getStudentCount() * (matrix.getSessionCount() * 7 + 48));
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write('\uFEFF');
+        matrix.writeCsv(writer);
+        String fileName = teachingClassOpt.get().getClassName() + "_出勤矩阵.csv";
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build().toString())
+                .body(out.toByteArray());
+    }
+
     // 从教学班移除学生
     @GetMapping("/teaching-classes/{classId}/students/remove/{studentId}")
     public String removeStudentFromTeachingClass(
@@ -340,6 +490,7 @@ public class TeacherController {
 
     // 签到会话列表
     @GetMapping("/attendance/sessions")
+    @SqlBudget(6)
     public String attendanceSessionList(
             @RequestParam(required = false) Long classId,
             Model model, HttpSession session) {
@@ -370,6 +521,8 @@ public class TeacherController {
         model.addAttribute("teacher", teacher);
         model.addAttribute("teachingClasses", teachingClasses);
         model.addAttribute("sessions", sessions);
+        // 每个会话一行汇总，不再逐个统计签到记录
+        model.addAttribute("sessionSummaries", attendanceSessionSummaryService.getSummaries(sessions));
 
         return "teacher/attendance-session-list";
     }
@@ -467,6 +620,8 @@ public class TeacherController {
             HttpSession session,
             RedirectAttributes redirectAttributes) {
 
+        Long teacherId = null;
+        Long classId = null;
         try {
             // 检查是否登录
             Object user = session.getAttribute("user");
@@ -475,25 +630,24 @@ public class TeacherController {
             }
 
             Teacher teacher = (Teacher) user;
-            AttendanceSession attendanceSession = attendanceSessionRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("签到会话不存在"));
-
-            // 检查权限
-            if (!attendanceSession.getTeachingClass().getTeacher().getId().equals(teacher.getId())) {
-                throw new RuntimeException("无权操作此签到会话");
-            }
+            teacherId = teacher.getId();
 
-            attendanceService.startAttendanceSession(id);
+            // 归属校验在服务层的查询中完成（会话 JOIN 教学班，按教师过滤）
+            AttendanceSession attendanceSession = attendanceService.startAttendanceSession(id, teacherId);
+            classId = attendanceSession.getTeachingClass().getId();
 
             redirectAttributes.addFlashAttribute("success", "签到已开始！");
 
         } catch (Exception e) {
             log.error("开始签到失败", e);
             redirectAttributes.addFlashAttribute("error", "开始签到失败：" + e.getMessage());
+            if (teacherId != null) {
+                classId = attendanceSessionRepository.findOwnedTeachingClassId(id, teacherId).orElse(null);
+            }
         }
 
-        return "redirect:/teacher/attendance/sessions?classId=" +
-                attendanceSessionRepository.findById(id).get().getTeachingClass().getId();
+        return classId != null ? "redirect:/teacher/attendance/sessions?classId=" + classId
+                : "redirect:/teacher/attendance/sessions";
     }
 
     // 结束签到
@@ -503,6 +657,8 @@ public class TeacherController {
             HttpSession session,
             RedirectAttributes redirectAttributes) {
 
+        Long teacherId = null;
+        Long classId = null;
         try {
             // 检查是否登录
             Object user = session.getAttribute("user");
@@ -511,29 +667,29 @@ public class TeacherController {
             }
 
             Teacher teacher = (Teacher) user;
-            AttendanceSession attendanceSession = attendanceSessionRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("签到会话不存在"));
+            teacherId = teacher.getId();
 
-            // 检查权限
-            if (!attendanceSession.getTeachingClass().getTeacher().getId().equals(teacher.getId())) {
-                throw new RuntimeException("无权操作此签到会话");
-            }
-
-            attendanceService.endAttendanceSession(id);
+            // 归属校验在服务层的查询中完成（会话 JOIN 教学班，按教师过滤）
+            AttendanceSession attendanceSession = attendanceService.endAttendanceSession(id, teacherId);
+            classId = attendanceSession.getTeachingClass().getId();
 
             redirectAttributes.addFlashAttribute("success", "签到已结束！");
 
         } catch (Exception e) {
             log.error("结束签到失败", e);
             redirectAttributes.addFlashAttribute("error", "结束签到失败：" + e.getMessage());
+            if (teacherId != null) {
+                classId = attendanceSessionRepository.findOwnedTeachingClassId(id, teacherId).orElse(null);
+            }
         }
 
-        return "redirect:/teacher/attendance/sessions?classId=" +
-                attendanceSessionRepository.findById(id).get().getTeachingClass().getId();
+        return classId != null ? "redirect:/teacher/attendance/sessions?classId=" + classId
+                : "redirect:/teacher/attendance/sessions";
     }
 
     // 查看签到详情和统计
     @GetMapping("/attendance/sessions/{id}/details")
+    @SqlBudget(4)
     public String attendanceSessionDetails(
             @PathVariable Long id,
             Model model, HttpSession session) {
@@ -545,13 +701,8 @@ public class TeacherController {
         }
 
         Teacher teacher = (Teacher) user;
-        AttendanceSession attendanceSession = attendanceSessionRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("签到会话不存在"));
-
-        // 检查权限
-        if (!attendanceSession.getTeachingClass().getTeacher().getId().equals(teacher.getId())) {
-            throw new RuntimeException("无权查看此签到会话");
-        }
+        AttendanceSession attendanceSession = attendanceSessionRepository.findOwnedById(id, teacher.getId())
+                .orElseThrow(() -> new RuntimeException("签到会话不存在或无权查看"));
 
         // 获取统计信息
         var statistics = attendanceService.getAttendanceStatistics(id);
@@ -572,6 +723,24 @@ public class TeacherController {
         return "teacher/attendance-session-details";
     }
 
+    // 签到实时计数（SSE）
+    @GetMapping(value = "/attendance/sessions/{id}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter attendanceSessionLive(@PathVariable Long id, HttpSession session) {
+        // 检查是否登录
+        Object user = session.getAttribute("user");
+        if (user == null || !"TEACHER".equals(session.getAttribute("userType"))) {
+            throw new RuntimeException("未登录");
+        }
+
+        Teacher teacher = (Teacher) user;
+        if (attendanceSessionRepository.findOwnedTeachingClassId(id, teacher.getId()).isEmpty()) {
+            throw new RuntimeException("签到会话不存在或无权查看");
+        }
+
+        return attendanceLiveService.subscribe(id);
+    }
+
     private final QrCodeConfig qrCodeConfig;
     // 显示签到二维码页面
     @GetMapping("/attendance/sessions/{id}/qr-code")
@@ -589,56 +758,29 @@ public class TeacherController {
         AttendanceSession attendanceSession = null;
 
         try {
-            // 1. 获取签到会话（强制校验）
-            attendanceSession = attendanceSessionRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("签到会话不存在 [ID: " + id + "]"));
-
-            // 2. 关联关系校验
-            if (attendanceSession.getTeachingClass() == null) {
-                throw new RuntimeException("签到会话未关联教学班");
-            }
-            if (attendanceSession.getTeachingClass().getTeacher() == null) {
-                throw new RuntimeException("教学班未关联教师");
-            }
-
-            // 3. 权限校验
-            if (!Objects.equals(attendanceSession.getTeachingClass().getTeacher().getId(), teacher.getId())) {
-                throw new RuntimeException("无权限操作此签到会话（非本人创建）");
-            }
+            // 1. 获取本人的签到会话（连同教学班，一条查询完成权限校验）
+            attendanceSession = attendanceSessionRepository.findOwnedById(id, teacher.getId())
+                    .orElseThrow(() -> new RuntimeException("签到会话不存在或无权操作 [ID: " + id + "]"));
 
-            // 4. 状态校验（放宽：即使未开始也能显示二维码，方便测试）
+            // 2. 状态校验（放宽：即使未开始也能显示二维码，方便测试）
             if (!Arrays.asList("STARTED", "CREATED").contains(attendanceSession.getStatus())) {
                 model.addAttribute("warn", "签到尚未开始/已结束，二维码可能无效");
                 // 不抛异常，仅提示，方便测试二维码显示
             }
-            // 5. 获取配置的baseUrl
+            // 3. 获取配置的baseUrl
             String baseUrl = qrCodeConfig.getBaseUrl();
             String attendanceCode = attendanceSession.getAttendanceCode();
-            String attendanceUrl = baseUrl + "/attendance/signin?code=" + attendanceCode;
+            String attendanceUrl = qrCodeService.buildSigninUrl(attendanceCode, baseUrl);
 
-            // 打印关键日志，定位二维码生成问题
-            log.info("开始生成二维码 - 签到码: {}, 签到URL: {}",
-                    attendanceCode, attendanceUrl);
-            String qrCodeBase64 = qrCodeService.generateAttendanceQRCode(attendanceCode, baseUrl);
-
-            // 6. 校验二维码生成结果（日志+异常）
-            if (qrCodeBase64 == null || qrCodeBase64.isEmpty()) {
-                log.error("二维码生成失败 - 返回空值 | 签到码: {}", attendanceCode);
-                throw new RuntimeException("二维码生成服务返回空值，请检查生成逻辑");
-            }
-            log.info("二维码生成成功 - Base64长度: {}", qrCodeBase64.length());
-
-            // 7. 数据库存储
-            attendanceSession.setQrCodeUrl("data:image/png;base64," + qrCodeBase64);
-            attendanceSessionRepository.save(attendanceSession);
-
-            // 8. 统一参数传递（只传必要参数，避免混淆）
+            // 4. 二维码图片由 qr-code.png 接口单独提供（带缓存），页面不再内嵌Base64，也不再写回数据库
             model.addAttribute("teacher", teacher);
             model.addAttribute("attendanceSession", attendanceSession); // 主对象
-            model.addAttribute("qrCodeBase64", qrCodeBase64); // 纯Base64（前端拼前缀）
-            model.addAttribute("qrCodeUrl", "data:image/png;base64," + qrCodeBase64); // 可直接渲染的URL
             model.addAttribute("attendanceUrl", attendanceUrl); // 签到链接
             model.addAttribute("attendanceCode", attendanceCode);
+            // 启用令牌时页面按轮换周期刷新二维码图片，且不显示签到码：只凭签到码无法通过令牌校验
+            model.addAttribute("tokenEnabled", attendanceTokenService.isEnabled());
+            model.addAttribute("qrRefreshSeconds",
+                    attendanceTokenService.isEnabled() ? attendanceTokenService.getRotateSeconds() : 0);
 
             return "teacher/attendance-qr-code";
 
@@ -649,12 +791,72 @@ public class TeacherController {
             model.addAttribute("attendanceSession", attendanceSession);
             model.addAttribute("errorMsg", "二维码加载失败：" + e.getMessage());
             model.addAttribute("attendanceCode", attendanceSession != null ? attendanceSession.getAttendanceCode() : "");
+            model.addAttribute("tokenEnabled", attendanceTokenService.isEnabled());
             // 仍返回二维码页面，而非error页，方便前端调试
             return "teacher/attendance-qr-code";
         }
     }
 
+    // 二维码图片（PNG），按签到码和尺寸缓存，支持 ETag 协商缓存
+    @GetMapping("/attendance/sessions/{id}/qr-code.png")
+    public ResponseEntity<byte[]> qrCodeImage(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "300") int size,
+            HttpSession session) {
+        return qrCodeResponse(id, size, session, "png", MediaType.IMAGE_PNG);
+    }
+
+    // 二维码图片（SVG，矢量，适合投影大屏）
+    @GetMapping("/attendance/sessions/{id}/qr-code.svg")
+    public ResponseEntity<byte[]> qrCodeSvg(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "300") int size,
+            HttpSession session) {
+        return qrCodeResponse(id, size, session, "svg", MediaType.valueOf("image/svg+xml"));
+    }
+
+    private ResponseEntity<byte[]> qrCodeResponse(Long id, int size, HttpSession session,
+                                                  String format, MediaType contentType) {
+        // 检查是否登录
+        Object user = session.getAttribute("user");
+        if (user == null || !"TEACHER".equals(session.getAttribute("userType"))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // 页面定时刷新图片，这里只查签到码（按教师过滤）
+        Teacher teacher = (Teacher) user;
+        String attendanceCode = attendanceSessionRepository.findOwnedAttendanceCode(id, teacher.getId()).orElse(null);
+        if (attendanceCode == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        int imageSize = Math.max(100, Math.min(size, 1000));
+        String baseUrl = qrCodeConfig.getBaseUrl();
+
+        // 二维码内容带当前时间片的签到令牌，定时轮换
+        String token = attendanceTokenService.issue(id);
+
+        byte[] image = "svg".equals(format)
+                ? qrCodeService.generateAttendanceQRCodeSvg(attendanceCode, token, baseUrl, imageSize)
+                : qrCodeService.generateAttendanceQRCodePng(attendanceCode, token, baseUrl, imageSize);
+        if (image == null) {
+            return ResponseEntity.internalServerError().build();
+        }
+
+        // 令牌会轮换，浏览器每次都要协商；同一时间片内携带 If-None-Match 时由 Spring 直接返回 304
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(qrCodeService.getETag(attendanceCode, token, baseUrl, imageSize, format))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(image);
+    }
+
     private final AttendanceRecordRepository attendanceRecordRepository;
+    private final SignInAdmissionEngine signInAdmissionEngine;
+    private final AttendanceLiveService attendanceLiveService;
+    private final AttendanceTokenService attendanceTokenService;
+    private final AttendanceExportService attendanceExportService;
+    private final AttendanceSessionSummaryService attendanceSessionSummaryService;
     // 取消学生签到
     @GetMapping("/attendance/sessions/{sessionId}/cancel/{recordId}")
     public String cancelAttendanceRecord(
@@ -672,42 +874,28 @@ public class TeacherController {
 
             Teacher teacher = (Teacher) user;
 
-            // 1. 验证签到记录是否存在
-            AttendanceRecord record = attendanceRecordRepository.findById(recordId)
-                    .orElseThrow(() -> new RuntimeException("签到记录不存在"));
-
-            // 2. 验证签到会话（通过sessionId参数，更可靠）
-            AttendanceSession attendanceSession = attendanceSessionRepository.findById(sessionId)
-                    .orElseThrow(() -> new RuntimeException("签到会话不存在"));
+            // 1. 记录存在、属于该会话、会话属于本人：一条查询（连同会话和学生）
+            AttendanceRecord record = attendanceRecordRepository.findOwnedById(recordId, sessionId, teacher.getId())
+                    .orElseThrow(() -> new RuntimeException("签到记录不存在或无权限操作"));
+            AttendanceSession attendanceSession = record.getAttendanceSession();
 
-            // 3. 验证记录是否属于这个会话（可选但推荐）
-            if (record.getAttendanceSession() != null &&
-                    !record.getAttendanceSession().getId().equals(sessionId)) {
-                throw new RuntimeException("签到记录不属于当前签到会话");
-            }
-
-            // 4. 验证权限（是否是该教师的签到会话）
-            if (attendanceSession.getTeachingClass() == null ||
-                    !attendanceSession.getTeachingClass().getTeacher().getId().equals(teacher.getId())) {
-                throw new RuntimeException("无权限操作此签到记录");
-            }
-
-            // 5. 检查签到会话状态（如果已结束，给出提示但不阻止）
+            // 2. 检查签到会话状态（如果已结束，给出提示但不阻止）
             if ("ENDED".equals(attendanceSession.getStatus())) {
                 log.warn("取消已结束的签到会话中的记录 - sessionId: {}, recordId: {}", sessionId, recordId);
                 // 可以添加确认提示，但这里我们允许取消
             }
 
-            // 6. 删除签到记录
+            // 3. 删除签到记录
             attendanceRecordRepository.delete(record);
+            if (record.getStudent() != null) {
+                // 归还签到位，学生可以重新签到
+                signInAdmissionEngine.release(sessionId, record.getStudent().getId());
+            }
+            attendanceLiveService.onCancel(sessionId, record.getStudent() != null ? record.getStudent().getStudentId() : null);
+            attendanceSessionSummaryService.onCancel(record);
 
-            // 7. 更新学生最后签到时间（可选）
+            // 学生最后签到时间由签到记录实时计算，删除记录后自动回退到上一次签到
             Student student = record.getStudent();
-            if (student != null) {
-                // 可以清除最后签到时间，或者设置为null
-                student.setLastSigninTime(null);
-                studentRepository.save(student);
-            }
 
             log.info("取消签到成功 - 教师: {}, 学生: {}, 签到记录ID: {}",
                     teacher.getName(), student != null ? student.getName() : "未知", recordId);
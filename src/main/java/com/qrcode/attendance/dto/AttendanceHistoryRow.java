@@ -0,0 +1,15 @@
+package com.qrcode.attendance.dto;
+
+import java.time.LocalDateTime;
+
+// 学生签到历史的一行：签到记录 + 所属签到会话和教学班
+public record AttendanceHistoryRow(
+        Long recordId,
+        LocalDateTime signinTime,
+        String status,
+        Long sessionId,
+        String sessionTitle,
+        Long teachingClassId,
+        String teachingClassName,
+        String courseName) {
+}
@@ -0,0 +1,227 @@
+package com.qrcode.attendance.dto;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// 学生 × 签到会话 出勤矩阵（列式存储）：学生、会话的属性各自成数组，
+// 出勤状态每格一个字节（0 缺勤、1 出勤、2 迟到），下标 = 学生位置 * 会话数 + 会话位置；
+// 行列合计在填入签到记录时同步累加，不需要再遍历一遍
+public final class AttendanceMatrix {
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+    private static final byte LATE = 2;
+    private static final String[] STATUS_NAMES = {"ABSENT", "PRESENT", "LATE"};
+    private static final String[] STATUS_LABELS = {"缺勤", "出勤", "迟到"};
+    private static final char[] STATUS_CODES = {'A', 'P', 'L'};
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+
+    // 学生列
+    private final long[] studentPks;
+    private final String[] studentNumbers;
+    private final String[] studentNames;
+    private final String[] classNames;
+    private final Map<Long, Integer> studentPositions;
+
+    // 会话列
+    private final long[] sessionIds;
+    private final String[] sessionTitles;
+    private final LocalDateTime[] sessionStartTimes;
+    private final Map<Long, Integer> sessionPositions;
+
+    private final byte[] cells;
+    private final int[] studentPresent;
+    private final int[] studentLate;
+    private final int[] sessionPresent;
+    private final int[] sessionLate;
+
+    // sessions: (会话ID, 标题, 开始时间)
+    public AttendanceMatrix(List<RosterStudent> roster, List<Object[]> sessions) {
+        int studentCount = roster.size();
+        studentPks = new long[studentCount];
+        studentNumbers = new String[studentCount];
+        studentNames = new String[studentCount];
+        classNames = new String[studentCount];
+        studentPositions = new HashMap<>(studentCount * 4 / 3 + 1);
+        for (int i = 0; i < studentCount; i++) {
+            RosterStudent row = roster.get(i);
+            studentPks[i] = row.studentPk();
+            studentNumbers[i] = row.studentId();
+            studentNames[i] = row.name();
+            classNames[i] = row.className();
+            studentPositions.put(studentPks[i], i);
+        }
+
+        int sessionCount = sessions.size();
+        sessionIds = new long[sessionCount];
+        sessionTitles = new String[sessionCount];
+        sessionStartTimes = new LocalDateTime[sessionCount];
+        sessionPositions = new HashMap<>(sessionCount * 4 / 3 + 1);
+        for (int j = 0; j < sessionCount; j++) {
+            Object[] row = sessions.get(j);
+            sessionIds[j] = (Long) row[0];
+            sessionTitles[j] = (String) row[1];
+            sessionStartTimes[j] = (LocalDateTime) row[2];
+            sessionPositions.put(sessionIds[j], j);
+        }
+
+        cells = new byte[studentCount * sessionCount];
+        studentPresent = new int[studentCount];
+        studentLate = new int[studentCount];
+        sessionPresent = new int[sessionCount];
+        sessionLate = new int[sessionCount];
+    }
+
+    // 填入一条签到记录；已退课学生或未纳入矩阵的会话直接忽略
+    public void record(Long sessionId, Long studentPk, String status) {
+        Integer row = studentPositions.get(studentPk);
+        Integer col = sessionPositions.get(sessionId);
+        if (row == null || col == null) {
+            return;
+        }
+
+        byte value;
+        if ("PRESENT".equals(status)) {
+            value = PRESENT;
+        } else if ("LATE".equals(status)) {
+            value = LATE;
+        } else {
+            return;
+        }
+
+        int index = row * sessionIds.length + col;
+        if (cells[index] != ABSENT) {
+            return;
+        }
+        cells[index] = value;
+        if (value == PRESENT) {
+            studentPresent[row]++;
+            sessionPresent[col]++;
+        } else {
+            studentLate[row]++;
+            sessionLate[col]++;
+        }
+    }
+
+    public int getStudentCount() {
+        return studentPks.length;
+    }
+
+    public int getSessionCount() {
+        return sessionIds.length;
+    }
+
+    // JSON 结构：每个学生的 statuses 是按会话顺序排列的状态码串（P 出勤、L 迟到、A 缺勤）
+    public Map<String, Object> toMap() {
+        int studentCount = studentPks.length;
+        int sessionCount = sessionIds.length;
+
+        List<Map<String, Object>> sessions = new ArrayList<>(sessionCount);
+        for (int j = 0; j < sessionCount; j++) {
+            Map<String, Object> session = new LinkedHashMap<>();
+            session.put("id", sessionIds[j]);
+            session.put("title", sessionTitles[j]);
+            session.put("startTime", sessionStartTimes[j]);
+            session.put("presentCount", sessionPresent[j]);
+            session.put("lateCount", sessionLate[j]);
+            session.put("absentCount", studentCount - sessionPresent[j] - sessionLate[j]);
+            sessions.add(session);
+        }
+
+        List<Map<String, Object>> students = new ArrayList<>(studentCount);
+        char[] codes = new char[sessionCount];
+        for (int i = 0; i < studentCount; i++) {
+            int base = i * sessionCount;
+            for (int j = 0; j < sessionCount; j++) {
+                codes[j] = STATUS_CODES[cells[base + j]];
+            }
+            Map<String, Object> student = new LinkedHashMap<>();
+            student.put("id", studentPks[i]);
+            student.put("studentId", studentNumbers[i]);
+            student.put("name", studentNames[i]);
+            student.put("className", classNames[i]);
+            student.put("statuses", new String(codes));
+            student.put("presentCount", studentPresent[i]);
+            student.put("lateCount", studentLate[i]);
+            student.put("absentCount", sessionCount - studentPresent[i] - studentLate[i]);
+            students.add(student);
+        }
+
+        Map<String, Object> legend = new LinkedHashMap<>();
+        for (int k = 0; k < STATUS_CODES.length; k++) {
+            legend.put(String.valueOf(STATUS_CODES[k]), STATUS_NAMES[k]);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("legend", legend);
+        result.put("sessions", sessions);
+        result.put("students", students);
+        return result;
+    }
+
+    // CSV：每个学生一行，末尾三行是每次签到的出勤、迟到、缺勤人数
+    public void writeCsv(Writer writer) throws IOException {
+        int studentCount = studentPks.length;
+        int sessionCount = sessionIds.length;
+
+        writer.write("学号,姓名,行政班级");
+        for (int j = 0; j < sessionCount; j++) {
+            writer.write(',');
+            String start = sessionStartTimes[j] == null ? "" : sessionStartTimes[j].format(DATE_FORMAT) + " ";
+            writeCell(writer, start + sessionTitles[j]);
+        }
+        writer.write(",出勤,迟到,缺勤\r\n");
+
+        for (int i = 0; i < studentCount; i++) {
+            writeCell(writer, studentNumbers[i]);
+            writer.write(',');
+            writeCell(writer, studentNames[i]);
+            writer.write(',');
+            writeCell(writer, classNames[i]);
+            int base = i * sessionCount;
+            for (int j = 0; j < sessionCount; j++) {
+                writer.write(',');
+                writer.write(STATUS_LABELS[cells[base + j]]);
+            }
+            writer.write("," + studentPresent[i] + "," + studentLate[i] + ","
+                    + (sessionCount - studentPresent[i] - studentLate[i]) + "\r\n");
+        }
+
+        writeTotalsRow(writer, "出勤人数", sessionPresent);
+        writeTotalsRow(writer, "迟到人数", sessionLate);
+        int[] sessionAbsent = new int[sessionCount];
+        for (int j = 0; j < sessionCount; j++) {
+            sessionAbsent[j] = studentCount - sessionPresent[j] - sessionLate[j];
+        }
+        writeTotalsRow(writer, "缺勤人数", sessionAbsent);
+        writer.flush();
+    }
+
+    private static void writeTotalsRow(Writer writer, String label, int[] totals) throws IOException {
+        writer.write(",");
+        writer.write(label);
+        writer.write(",");
+        for (int total : totals) {
+            writer.write(",");
+            writer.write(Integer.toString(total));
+        }
+        writer.write(",,,\r\n");
+    }
+
+    private static void writeCell(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,17 @@
+package com.qrcode.attendance.dto;
+
+import java.time.LocalDateTime;
+
+// 花名册 LEFT JOIN 签到记录的扁平结果，未签到的学生 status/signinTime 为 null
+public record AttendanceRosterRow(
+        Long studentPk,
+        String studentId,
+        String name,
+        String className,
+        String status,
+        LocalDateTime signinTime) {
+
+    public boolean isSigned() {
+        return status != null;
+    }
+}
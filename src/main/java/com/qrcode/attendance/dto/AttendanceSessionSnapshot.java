@@ -0,0 +1,40 @@
+package com.qrcode.attendance.dto;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// 签到会话快照：签到页面和签到请求只需要这些字段，缓存后无需再查询数据库
+@Value
+public class AttendanceSessionSnapshot {
+    Long id;
+    Long teachingClassId;
+    String title;
+    String description;
+    String attendanceCode;
+    String status;
+    LocalDateTime startTime;
+    LocalDateTime endTime;
+
+    public static AttendanceSessionSnapshot of(AttendanceSession session) {
+        return new AttendanceSessionSnapshot(
+                session.getId(),
+                session.getTeachingClass().getId(),
+                session.getTitle(),
+                session.getDescription(),
+                session.getAttendanceCode(),
+                session.getStatus(),
+                session.getStartTime(),
+                session.getEndTime());
+    }
+
+    // 未结束的会话（已创建或进行中）才会被缓存
+    public boolean isLive() {
+        return "CREATED".equals(status) || "STARTED".equals(status);
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return now.isAfter(endTime);
+    }
+}
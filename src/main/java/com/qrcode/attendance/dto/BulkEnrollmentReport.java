@@ -0,0 +1,37 @@
+package com.qrcode.attendance.dto;
+
+import java.util.List;
+
+// 批量选课结果：逐行结果 + 汇总
+public record BulkEnrollmentReport(
+        List<Row> rows,
+        int addedCount,
+        int reactivatedCount,
+        int skippedCount) {
+
+    public enum Outcome {
+        ADDED("已添加"),
+        REACTIVATED("已恢复选课"),
+        ALREADY_ENROLLED("已在教学班中"),
+        DUPLICATE("重复的学号"),
+        NOT_FOUND("学生不存在");
+
+        private final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // line 为该学号在输入中的序号（从 1 开始，空行和表头不计）
+    public record Row(int line, String studentNumber, Outcome outcome, String message) {
+
+        public Row(int line, String studentNumber, Outcome outcome) {
+            this(line, studentNumber, outcome, outcome.getLabel());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.qrcode.attendance.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+// 键集分页结果：nextCursor 编码了本页最后一行的 (排序值, id)，下一页从它之后开始取，
+// 翻到多深都只扫描一页的数据，也不需要 COUNT 查询
+public record KeysetPage<T>(List<T> content, String nextCursor) {
+
+    public record Cursor(String value, Long id) {
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    // rows 按 size + 1 条查询，多出的一条只用来判断是否还有下一页
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, String> sortValue, Function<T, Long> id) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        T last = content.get(size - 1);
+        return new KeysetPage<>(content, encodeCursor(sortValue.apply(last), id.apply(last)));
+    }
+
+    public static String encodeCursor(String value, Long id) {
+        String raw = id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 游标为空或无法解析时返回 null，即从第一页开始
+    public static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0) {
+                return null;
+            }
+            return new Cursor(raw.substring(separator + 1), Long.valueOf(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.qrcode.attendance.dto;
+
+// 签到花名册的一行：学生主键和学号
+public record RosterKey(Long studentPk, String studentId) {
+}
@@ -0,0 +1,5 @@
+package com.qrcode.attendance.dto;
+
+// 教学班在读学生的展示字段，不含密码、院系等实体属性
+public record RosterStudent(Long studentPk, String studentId, String name, String className) {
+}
@@ -0,0 +1,14 @@
+package com.qrcode.attendance.dto;
+
+import java.time.LocalDateTime;
+
+// 签到结果：repeated 表示本次是重复提交，返回的是首次签到的记录；
+// pending 表示首次签到还在写入中（尚未落库，recordId 为空），学生稍后刷新即可看到结果
+public record SignInResult(
+        Long recordId,
+        String studentId,
+        LocalDateTime signinTime,
+        String status,
+        boolean repeated,
+        boolean pending) {
+}
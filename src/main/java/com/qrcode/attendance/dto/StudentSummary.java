@@ -0,0 +1,5 @@
+package com.qrcode.attendance.dto;
+
+// 学生列表项：主键、学号、姓名、行政班级和院系名称
+public record StudentSummary(Long id, String studentId, String name, String className, String departmentName) {
+}
@@ -5,7 +5,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "attendance_records")
+@Table(name = "attendance_records",
+        uniqueConstraints = @UniqueConstraint(name = "uk_attendance_records_session_student",
+                columnNames = {"attendance_session_id", "student_id"}),
+        indexes = @Index(name = "idx_attendance_records_student_time", columnList = "student_id, signin_time"))
 @Data
 public class AttendanceRecord {
     @Id
@@ -5,7 +5,8 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "attendance_sessions")
+@Table(name = "attendance_sessions",
+        indexes = @Index(name = "idx_attendance_sessions_code", columnList = "attendance_code"))
 @Data
 public class AttendanceSession {
     @Id
@@ -0,0 +1,52 @@
+package com.qrcode.attendance.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// 签到会话汇总：每个会话一行，由签到写入和取消签到增量维护，结束签到时按签到记录校准
+@Entity
+@Table(name = "attendance_session_summaries")
+@Data
+public class AttendanceSessionSummary {
+    @Id
+    @Column(name = "attendance_session_id")
+    private Long sessionId;
+
+    @Column(name = "roster_size", nullable = false)
+    private int rosterSize; // 应到人数（教学班在读学生数）
+
+    @Column(name = "present_count", nullable = false)
+    private int presentCount; // 出勤人数
+
+    @Column(name = "late_count", nullable = false)
+    private int lateCount; // 迟到人数
+
+    @Column(name = "first_signin_time")
+    private LocalDateTime firstSigninTime; // 最早签到时间
+
+    @Column(name = "last_signin_time")
+    private LocalDateTime lastSigninTime; // 最晚签到时间
+
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+
+    // 缺勤人数 = 应到 - 出勤 - 迟到
+    public int getAbsentCount() {
+        return Math.max(rosterSize - presentCount - lateCount, 0);
+    }
+
+    public int getSignedCount() {
+        return presentCount + lateCount;
+    }
+
+    public double getAttendanceRate() {
+        return rosterSize > 0 ? (double) getSignedCount() / rosterSize * 100 : 0;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updateTime = LocalDateTime.now();
+    }
+}
@@ -3,11 +3,11 @@ package com.qrcode.attendance.entity;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import jakarta.persistence.*;
-import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "students")
 @DiscriminatorValue("STUDENT")
+@Cacheable(false)
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class Student extends User {
@@ -23,7 +23,4 @@ public class Student extends User {
 
     @Column(name = "status", nullable = false)
     private String status = "ACTIVE"; // 状态：ACTIVE, INACTIVE, GRADUATED
-
-    @Column(name = "last_signin_time")
-    private LocalDateTime lastSigninTime; // 最后签到时间
 }
\ No newline at end of file
@@ -2,10 +2,13 @@ package com.qrcode.attendance.entity;
 
 import lombok.Data;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "teaching_classes")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "teaching-classes")
 @Data
 public class TeachingClass {
     @Id
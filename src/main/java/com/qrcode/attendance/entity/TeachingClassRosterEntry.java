@@ -0,0 +1,49 @@
+package com.qrcode.attendance.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Subselect;
+import org.hibernate.annotations.Synchronize;
+import java.time.LocalDateTime;
+
+// 教学班花名册只读视图：选课记录 + 学号、姓名、行政班级、院系名称一次取出，
+// 不加载 JOINED 继承的学生实体（密码、时间戳等）和院系实体
+@Entity
+@Immutable
+@Subselect("SELECT tcs.id, tcs.teaching_class_id, tcs.student_id AS student_pk, s.student_id AS student_number, " +
+        "u.name, s.class_name, d.name AS department_name, tcs.status, tcs.join_time " +
+        "FROM teaching_class_students tcs " +
+        "JOIN students s ON s.id = tcs.student_id " +
+        "JOIN users u ON u.id = s.id " +
+        "LEFT JOIN departments d ON d.id = u.department_id")
+@Synchronize({"teaching_class_students", "students", "users", "departments"})
+@Data
+public class TeachingClassRosterEntry {
+    @Id
+    private Long id; // 选课记录ID
+
+    @Column(name = "teaching_class_id")
+    private Long teachingClassId;
+
+    @Column(name = "student_pk")
+    private Long studentPk; // 学生主键
+
+    @Column(name = "student_number")
+    private String studentId; // 学号
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "class_name")
+    private String className; // 行政班级
+
+    @Column(name = "department_name")
+    private String departmentName;
+
+    @Column(name = "status")
+    private String status; // 选课状态：ACTIVE, DROPPED
+
+    @Column(name = "join_time")
+    private LocalDateTime joinTime;
+}
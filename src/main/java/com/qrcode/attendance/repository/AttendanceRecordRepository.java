@@ -1,12 +1,18 @@
 package com.qrcode.attendance.repository;
 
+import com.qrcode.attendance.dto.AttendanceHistoryRow;
+import com.qrcode.attendance.dto.AttendanceRosterRow;
+import com.qrcode.attendance.dto.KeysetPage;
 import com.qrcode.attendance.entity.AttendanceRecord;
 import com.qrcode.attendance.entity.AttendanceSession;
 import com.qrcode.attendance.entity.Student;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,12 +21,105 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     Optional<AttendanceRecord> findByAttendanceSessionAndStudent(AttendanceSession attendanceSession, Student student);
     boolean existsByAttendanceSessionAndStudent(AttendanceSession attendanceSession, Student student);
 
+    // 教师本人签到会话中的一条记录，连同会话和学生一起取出
+    @Query("SELECT ar FROM AttendanceRecord ar JOIN FETCH ar.attendanceSession s JOIN FETCH ar.student " +
+            "WHERE ar.id = :recordId AND s.id = :sessionId AND s.teachingClass.teacher.id = :teacherId")
+    Optional<AttendanceRecord> findOwnedById(@Param("recordId") Long recordId,
+                                             @Param("sessionId") Long sessionId,
+                                             @Param("teacherId") Long teacherId);
+
+    // 命中 (attendance_session_id, student_id) 唯一索引
+    Optional<AttendanceRecord> findByAttendanceSessionIdAndStudentId(Long attendanceSessionId, Long studentId);
+
     @Query("SELECT COUNT(ar) FROM AttendanceRecord ar WHERE ar.attendanceSession = :attendanceSession AND ar.status = 'PRESENT'")
     long countPresentByAttendanceSession(@Param("attendanceSession") AttendanceSession attendanceSession);
 
     @Query("SELECT COUNT(ar) FROM AttendanceRecord ar WHERE ar.attendanceSession = :attendanceSession AND ar.status = 'LATE'")
     long countLateByAttendanceSession(@Param("attendanceSession") AttendanceSession attendanceSession);
 
-    // 查询指定会话的所有签到记录
-    List<AttendanceRecord> findByAttendanceSessionId(Long sessionId);
-}
\ No newline at end of file
+    // 查询指定会话的所有签到记录（连同学生一起取出，页面显示姓名不再逐条查询）
+    @Query("SELECT ar FROM AttendanceRecord ar JOIN FETCH ar.student WHERE ar.attendanceSession.id = :sessionId")
+    List<AttendanceRecord> findByAttendanceSessionId(@Param("sessionId") Long sessionId);
+
+    // 查询指定会话中已签到学生的主键
+    @Query("SELECT ar.student.id FROM AttendanceRecord ar WHERE ar.attendanceSession.id = :sessionId")
+    List<Long> findStudentIdsByAttendanceSessionId(@Param("sessionId") Long sessionId);
+
+    // 会话签到汇总：(出勤数, 迟到数, 最早签到时间, 最晚签到时间)，用于校准汇总表。
+    // 与签到统计页口径一致，只统计教学班当前在读学生的记录
+    @Query("SELECT SUM(CASE WHEN ar.status = 'PRESENT' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN ar.status = 'LATE' THEN 1 ELSE 0 END), MIN(ar.signinTime), MAX(ar.signinTime) " +
+            "FROM AttendanceRecord ar JOIN TeachingClassStudent tcs " +
+            "ON tcs.student = ar.student AND tcs.teachingClass = ar.attendanceSession.teachingClass " +
+            "WHERE ar.attendanceSession.id = :sessionId AND tcs.status = 'ACTIVE'")
+    List<Object[]> summarizeByAttendanceSessionId(@Param("sessionId") Long sessionId);
+
+    // 教学班各会话的签到汇总：(会话ID, 出勤数, 迟到数, 最早签到时间, 最晚签到时间)，只统计在读学生，选课变化后重算汇总表
+    @Query("SELECT ar.attendanceSession.id, SUM(CASE WHEN ar.status = 'PRESENT' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN ar.status = 'LATE' THEN 1 ELSE 0 END), MIN(ar.signinTime), MAX(ar.signinTime) " +
+            "FROM AttendanceRecord ar JOIN TeachingClassStudent tcs " +
+            "ON tcs.student = ar.student AND tcs.teachingClass = ar.attendanceSession.teachingClass " +
+            "WHERE ar.attendanceSession.teachingClass.id = :teachingClassId AND tcs.status = 'ACTIVE' " +
+            "GROUP BY ar.attendanceSession.id")
+    List<Object[]> summarizeByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 会话签到时间范围：(最早签到时间, 最晚签到时间)，只统计在读学生
+    @Query("SELECT MIN(ar.signinTime), MAX(ar.signinTime) FROM AttendanceRecord ar JOIN TeachingClassStudent tcs " +
+            "ON tcs.student = ar.student AND tcs.teachingClass = ar.attendanceSession.teachingClass " +
+            "WHERE ar.attendanceSession.id = :sessionId AND tcs.status = 'ACTIVE'")
+    List<Object[]> findSigninTimeRangeByAttendanceSessionId(@Param("sessionId") Long sessionId);
+
+    // 学生最后签到时间：(student_id, signin_time) 索引上取最大值，只在需要显示时查询；没有签到记录时为 null
+    @Query("SELECT MAX(ar.signinTime) FROM AttendanceRecord ar WHERE ar.student.id = :studentPk")
+    LocalDateTime findLastSigninTimeByStudentId(@Param("studentPk") Long studentPk);
+
+    // 学生签到历史（跨教学班，按签到时间倒序），走 (student_id, signin_time) 索引
+    @Query("SELECT new com.qrcode.attendance.dto.AttendanceHistoryRow(ar.id, ar.signinTime, ar.status, " +
+            "s.id, s.title, tc.id, tc.className, tc.courseName) " +
+            "FROM AttendanceRecord ar JOIN ar.attendanceSession s JOIN s.teachingClass tc " +
+            "WHERE ar.student.id = :studentPk ORDER BY ar.signinTime DESC, ar.id DESC")
+    List<AttendanceHistoryRow> findHistoryByStudentId(@Param("studentPk") Long studentPk, Limit limit);
+
+    // 游标之后的一页：(签到时间, 记录ID) 严格小于上一页最后一行
+    @Query("SELECT new com.qrcode.attendance.dto.AttendanceHistoryRow(ar.id, ar.signinTime, ar.status, " +
+            "s.id, s.title, tc.id, tc.className, tc.courseName) " +
+            "FROM AttendanceRecord ar JOIN ar.attendanceSession s JOIN s.teachingClass tc " +
+            "WHERE ar.student.id = :studentPk " +
+            "AND (ar.signinTime < :signinTime OR (ar.signinTime = :signinTime AND ar.id < :recordId)) " +
+            "ORDER BY ar.signinTime DESC, ar.id DESC")
+    List<AttendanceHistoryRow> findHistoryByStudentIdBefore(@Param("studentPk") Long studentPk,
+                                                            @Param("signinTime") LocalDateTime signinTime,
+                                                            @Param("recordId") Long recordId,
+                                                            Limit limit);
+
+    // 键集分页：多取一条判断是否还有下一页，游标无法解析时从第一页开始
+    default KeysetPage<AttendanceHistoryRow> findHistoryPage(Long studentPk, String cursor, int size) {
+        KeysetPage.Cursor decoded = KeysetPage.decodeCursor(cursor);
+        LocalDateTime signinTime = null;
+        if (decoded != null) {
+            try {
+                signinTime = LocalDateTime.parse(decoded.value());
+            } catch (DateTimeParseException e) {
+                decoded = null;
+            }
+        }
+        List<AttendanceHistoryRow> rows = decoded == null
+                ? findHistoryByStudentId(studentPk, Limit.of(size + 1))
+                : findHistoryByStudentIdBefore(studentPk, signinTime, decoded.id(), Limit.of(size + 1));
+        return KeysetPage.of(rows, size, row -> row.signinTime().toString(), AttendanceHistoryRow::recordId);
+    }
+
+    // 教学班全部签到记录的 (会话ID, 学生主键, 状态)，用于出勤矩阵
+    @Query("SELECT ar.attendanceSession.id, ar.student.id, ar.status FROM AttendanceRecord ar " +
+            "WHERE ar.attendanceSession.teachingClass.id = :teachingClassId")
+    List<Object[]> findMatrixCellsByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 会话所在教学班的花名册 LEFT JOIN 本次签到记录，一次查询得到全部统计数据
+    @Query("SELECT new com.qrcode.attendance.dto.AttendanceRosterRow(s.id, s.studentId, s.name, s.className, ar.status, ar.signinTime) " +
+            "FROM TeachingClassStudent tcs JOIN tcs.student s " +
+            "LEFT JOIN AttendanceRecord ar ON ar.student = s AND ar.attendanceSession.id = :sessionId " +
+            "WHERE tcs.status = 'ACTIVE' AND tcs.teachingClass.id = " +
+            "(SELECT a.teachingClass.id FROM AttendanceSession a WHERE a.id = :sessionId) " +
+            "ORDER BY s.studentId")
+    List<AttendanceRosterRow> findRosterWithRecordsBySessionId(@Param("sessionId") Long sessionId);
+}
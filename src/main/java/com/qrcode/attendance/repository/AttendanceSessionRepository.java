@@ -13,10 +13,39 @@ import java.util.Optional;
 public interface AttendanceSessionRepository extends JpaRepository<AttendanceSession, Long> {
     List<AttendanceSession> findByTeachingClassOrderByStartTimeDesc(TeachingClass teachingClass);
 
-    @Query("SELECT a FROM AttendanceSession a WHERE a.teachingClass.teacher.id = :teacherId AND a.status = :status")
+    @Query("SELECT a FROM AttendanceSession a JOIN FETCH a.teachingClass tc WHERE tc.teacher.id = :teacherId AND a.status = :status")
     List<AttendanceSession> findByTeacherIdAndStatus(@Param("teacherId") Long teacherId, @Param("status") String status);
 
-    Optional<AttendanceSession> findByAttendanceCode(String attendanceCode);
+    // 教师本人的签到会话，连同教学班一起取出：存在性和权限在一条 JOIN 查询里完成
+    @Query("SELECT a FROM AttendanceSession a JOIN FETCH a.teachingClass tc WHERE a.id = :id AND tc.teacher.id = :teacherId")
+    Optional<AttendanceSession> findOwnedById(@Param("id") Long id, @Param("teacherId") Long teacherId);
+
+    // 只需要归属和所在教学班时（例如重定向）
+    @Query("SELECT a.teachingClass.id FROM AttendanceSession a WHERE a.id = :id AND a.teachingClass.teacher.id = :teacherId")
+    Optional<Long> findOwnedTeachingClassId(@Param("id") Long id, @Param("teacherId") Long teacherId);
+
+    // 二维码图片只需要签到码
+    @Query("SELECT a.attendanceCode FROM AttendanceSession a WHERE a.id = :id AND a.teachingClass.teacher.id = :teacherId")
+    Optional<String> findOwnedAttendanceCode(@Param("id") Long id, @Param("teacherId") Long teacherId);
+
+    // 签到码会被循环使用，同一个签到码取最新的会话
+    Optional<AttendanceSession> findFirstByAttendanceCodeOrderByIdDesc(String attendanceCode);
+
+    @Query("SELECT a.attendanceCode FROM AttendanceSession a WHERE a.status IN ('CREATED', 'STARTED') AND a.attendanceCode IS NOT NULL")
+    List<String> findLiveAttendanceCodes();
+
+    // 结束时间在 since 之后的已结束会话的 (签到码, 结束时间)，重启后仍处于冷却期
+    @Query("SELECT a.attendanceCode, a.endTime FROM AttendanceSession a WHERE a.status NOT IN ('CREATED', 'STARTED') AND a.attendanceCode IS NOT NULL AND a.endTime >= :since")
+    List<Object[]> findAttendanceCodesEndedSince(@Param("since") LocalDateTime since);
+
+    // 未结束会话的 (会话ID, 开始时间, 结束时间, 状态)，启动时装载自动调度
+    @Query("SELECT a.id, a.startTime, a.endTime, a.status FROM AttendanceSession a WHERE a.status IN ('CREATED', 'STARTED')")
+    List<Object[]> findLiveSessionTimes();
+
+    // 出勤矩阵的列：已开始或已结束的签到 (会话ID, 标题, 开始时间)，按开始时间排序
+    @Query("SELECT a.id, a.title, a.startTime FROM AttendanceSession a " +
+            "WHERE a.teachingClass.id = :teachingClassId AND a.status IN ('STARTED', 'ENDED') ORDER BY a.startTime, a.id")
+    List<Object[]> findMatrixColumnsByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
 
     @Query("SELECT a FROM AttendanceSession a WHERE a.status = 'STARTED' AND a.endTime > :now")
     List<AttendanceSession> findActiveSessions(@Param("now") LocalDateTime now);
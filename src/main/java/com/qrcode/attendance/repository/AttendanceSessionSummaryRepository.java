@@ -0,0 +1,48 @@
+package com.qrcode.attendance.repository;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.entity.AttendanceSessionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AttendanceSessionSummaryRepository extends JpaRepository<AttendanceSessionSummary, Long> {
+
+    List<AttendanceSessionSummary> findBySessionIdIn(Collection<Long> sessionIds);
+
+    @Query("SELECT s FROM AttendanceSessionSummary s WHERE s.sessionId IN " +
+            "(SELECT a.id FROM AttendanceSession a WHERE a.teachingClass.id = :teachingClassId)")
+    List<AttendanceSessionSummary> findByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 还没有汇总行的会话（早于汇总表创建），启动时补齐
+    @Query("SELECT a FROM AttendanceSession a WHERE NOT EXISTS " +
+            "(SELECT s FROM AttendanceSessionSummary s WHERE s.sessionId = a.id)")
+    List<AttendanceSession> findSessionsWithoutSummary();
+
+    @Modifying
+    @Query("UPDATE AttendanceSessionSummary s SET s.rosterSize = :rosterSize, s.updateTime = CURRENT_TIMESTAMP " +
+            "WHERE s.sessionId = :sessionId")
+    int updateRosterSize(@Param("sessionId") Long sessionId, @Param("rosterSize") int rosterSize);
+
+    // 取消一条签到：对应计数减一
+    @Modifying
+    @Query("UPDATE AttendanceSessionSummary s SET " +
+            "s.presentCount = s.presentCount - (CASE WHEN :status = 'PRESENT' AND s.presentCount > 0 THEN 1 ELSE 0 END), " +
+            "s.lateCount = s.lateCount - (CASE WHEN :status = 'LATE' AND s.lateCount > 0 THEN 1 ELSE 0 END), " +
+            "s.updateTime = CURRENT_TIMESTAMP WHERE s.sessionId = :sessionId")
+    int decrement(@Param("sessionId") Long sessionId, @Param("status") String status);
+
+    @Modifying
+    @Query("UPDATE AttendanceSessionSummary s SET s.firstSigninTime = :first, s.lastSigninTime = :last, " +
+            "s.updateTime = CURRENT_TIMESTAMP WHERE s.sessionId = :sessionId")
+    int updateSigninTimeRange(@Param("sessionId") Long sessionId,
+                              @Param("first") LocalDateTime first,
+                              @Param("last") LocalDateTime last);
+}
@@ -1,10 +1,19 @@
 package com.qrcode.attendance.repository;
 
 import com.qrcode.attendance.entity.Department;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import java.util.List;
 
 public interface DepartmentRepository extends JpaRepository<Department, Long> {
     boolean existsByName(String name);
+
+    // 几乎每个管理页面都要院系下拉框，结果走查询缓存；院系增删改后 Hibernate 自动使其失效
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "department-queries")
+    })
     List<Department> findAllByOrderByName();
 }
\ No newline at end of file
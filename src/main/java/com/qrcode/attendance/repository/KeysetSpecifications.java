@@ -0,0 +1,84 @@
+package com.qrcode.attendance.repository;
+
+import com.qrcode.attendance.dto.KeysetPage;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 管理端列表（学生、教师）共用的筛选和键集分页条件
+public final class KeysetSpecifications {
+
+    // LIKE 模式中的转义字符（不用反斜杠：MySQL 字符串字面量里反斜杠本身需要转义）
+    public static final char ESCAPE = '!';
+
+    private KeysetSpecifications() {
+    }
+
+    // 院系、状态、关键词筛选；关键词对 keywordProperties 做不区分大小写的包含匹配（任一列命中即可）。
+    // 列表页要显示院系名称，顺带 fetch 院系避免 N+1
+    public static <T> Specification<T> filter(Long departmentId, String status, String keyword,
+                                              String... keywordProperties) {
+        String pattern = likePattern(keyword);
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("department", JoinType.LEFT);
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            if (departmentId != null) {
+                predicates.add(cb.equal(root.get("department").get("id"), departmentId));
+            }
+            if (status != null && !status.isEmpty()) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            if (pattern != null) {
+                Predicate[] matches = new Predicate[keywordProperties.length];
+                for (int i = 0; i < keywordProperties.length; i++) {
+                    matches[i] = cb.like(cb.lower(root.get(keywordProperties[i])), pattern, ESCAPE);
+                }
+                predicates.add(cb.or(matches));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // 关键词转成 LIKE 模式（小写、转义通配符），空白返回 null
+    public static String likePattern(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        String escaped = keyword.trim().toLowerCase()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+
+    // (排序值, id) 严格位于游标之后
+    public static <T> Specification<T> after(String property, boolean descending, KeysetPage.Cursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return cb.conjunction();
+            }
+            Expression<String> value = root.get(property);
+            Expression<Long> id = root.get("id");
+            Predicate beyond = descending
+                    ? cb.lessThan(value, cursor.value())
+                    : cb.greaterThan(value, cursor.value());
+            Predicate tie = cb.and(
+                    cb.equal(value, cursor.value()),
+                    descending ? cb.lessThan(id, cursor.id()) : cb.greaterThan(id, cursor.id()));
+            return cb.or(beyond, tie);
+        };
+    }
+
+    // 排序值相同的行按 id 排，保证游标位置唯一
+    public static Sort sort(String property, boolean descending) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+}
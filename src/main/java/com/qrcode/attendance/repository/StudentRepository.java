@@ -1,14 +1,20 @@
 package com.qrcode.attendance.repository;
 
+import com.qrcode.attendance.dto.KeysetPage;
+import com.qrcode.attendance.dto.StudentSummary;
 import com.qrcode.attendance.entity.Student;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, Long>, JpaSpecificationExecutor<Student> {
     Optional<Student> findByStudentId(String studentId);
     boolean existsByStudentId(String studentId);
     boolean existsByUsername(String username);
@@ -20,4 +26,52 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     List<Student> findByDepartmentId(@Param("departmentId") Long departmentId);
 
     List<Student> findByClassName(String className);
+
+    // 学生搜索索引的构建数据：主键、学号、姓名、行政班级
+    @Query("SELECT s.id, s.studentId, s.name, s.className FROM Student s ORDER BY s.studentId")
+    List<Object[]> findSearchKeys();
+
+    // 按学号批量解析主键：(主键, 学号)
+    @Query("SELECT s.id, s.studentId FROM Student s WHERE s.studentId IN :studentIds")
+    List<Object[]> findKeysByStudentIdIn(@Param("studentIds") Collection<String> studentIds);
+
+    // 按主键批量取列表展示字段，院系只取名称
+    @Query("SELECT new com.qrcode.attendance.dto.StudentSummary(s.id, s.studentId, s.name, s.className, d.name) " +
+            "FROM Student s LEFT JOIN s.department d WHERE s.id IN :ids")
+    List<StudentSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 按状态分组计数（可按院系、关键词筛选，关键词由 KeysetSpecifications.likePattern 转换），一条聚合查询代替加载全部学生
+    @Query("SELECT s.status, COUNT(s) FROM Student s " +
+            "WHERE (:departmentId IS NULL OR s.department.id = :departmentId) " +
+            "AND (:keyword IS NULL OR LOWER(s.studentId) LIKE :keyword ESCAPE '!' OR LOWER(s.name) LIKE :keyword ESCAPE '!' OR LOWER(s.className) LIKE :keyword ESCAPE '!') " +
+            "GROUP BY s.status")
+    List<Object[]> countGroupByStatus(@Param("departmentId") Long departmentId, @Param("keyword") String keywordPattern);
+
+    // 管理端学生列表：院系/状态/关键词筛选 + 键集分页，sort 不支持时按学号排序
+    default KeysetPage<Student> findPage(Long departmentId, String status, String keyword, String sort,
+                                         boolean descending, String cursor, int size) {
+        String property = sortKey(sort) != null ? sort : "studentId";
+        Specification<Student> spec = KeysetSpecifications.<Student>filter(departmentId, status, keyword,
+                        "studentId", "name", "className")
+                .and(KeysetSpecifications.after(property, descending, KeysetPage.decodeCursor(cursor)));
+        List<Student> rows = findBy(spec, query -> query
+                .sortBy(KeysetSpecifications.sort(property, descending))
+                .limit(size + 1)
+                .all());
+        return KeysetPage.of(rows, size, sortKey(property), Student::getId);
+    }
+
+    // 可排序的字段（都是非空字符串列）
+    private static Function<Student, String> sortKey(String sort) {
+        if (sort == null) {
+            return null;
+        }
+        return switch (sort) {
+            case "studentId" -> Student::getStudentId;
+            case "name" -> Student::getName;
+            case "className" -> Student::getClassName;
+            case "enrollmentYear" -> Student::getEnrollmentYear;
+            default -> null;
+        };
+    }
 }
\ No newline at end of file
@@ -1,14 +1,18 @@
 package com.qrcode.attendance.repository;
 
+import com.qrcode.attendance.dto.KeysetPage;
 import com.qrcode.attendance.entity.Teacher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
-public interface TeacherRepository extends JpaRepository<Teacher, Long> {
+public interface TeacherRepository extends JpaRepository<Teacher, Long>, JpaSpecificationExecutor<Teacher> {
     Optional<Teacher> findByUsername(String username);
     Optional<Teacher> findByTeacherId(String teacherId);
     boolean existsByTeacherId(String teacherId);
@@ -19,4 +23,38 @@ public interface TeacherRepository extends JpaRepository<Teacher, Long> {
 
     @Query("SELECT t FROM Teacher t WHERE t.department.id = :departmentId")
     List<Teacher> findByDepartmentId(@Param("departmentId") Long departmentId);
+
+    // 按状态分组计数（可按院系、关键词筛选，关键词由 KeysetSpecifications.likePattern 转换），一条聚合查询代替加载全部教师
+    @Query("SELECT t.status, COUNT(t) FROM Teacher t " +
+            "WHERE (:departmentId IS NULL OR t.department.id = :departmentId) " +
+            "AND (:keyword IS NULL OR LOWER(t.teacherId) LIKE :keyword ESCAPE '!' OR LOWER(t.name) LIKE :keyword ESCAPE '!' OR LOWER(t.username) LIKE :keyword ESCAPE '!') " +
+            "GROUP BY t.status")
+    List<Object[]> countGroupByStatus(@Param("departmentId") Long departmentId, @Param("keyword") String keywordPattern);
+
+    // 管理端教师列表：院系/状态/关键词筛选 + 键集分页，sort 不支持时按工号排序
+    default KeysetPage<Teacher> findPage(Long departmentId, String status, String keyword, String sort,
+                                         boolean descending, String cursor, int size) {
+        String property = sortKey(sort) != null ? sort : "teacherId";
+        Specification<Teacher> spec = KeysetSpecifications.<Teacher>filter(departmentId, status, keyword,
+                        "teacherId", "name", "username")
+                .and(KeysetSpecifications.after(property, descending, KeysetPage.decodeCursor(cursor)));
+        List<Teacher> rows = findBy(spec, query -> query
+                .sortBy(KeysetSpecifications.sort(property, descending))
+                .limit(size + 1)
+                .all());
+        return KeysetPage.of(rows, size, sortKey(property), Teacher::getId);
+    }
+
+    // 可排序的字段（都是非空字符串列）
+    private static Function<Teacher, String> sortKey(String sort) {
+        if (sort == null) {
+            return null;
+        }
+        return switch (sort) {
+            case "teacherId" -> Teacher::getTeacherId;
+            case "name" -> Teacher::getName;
+            case "username" -> Teacher::getUsername;
+            default -> null;
+        };
+    }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.qrcode.attendance.repository;
+
+import com.qrcode.attendance.entity.TeachingClassRosterEntry;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+// 花名册视图只读，不提供 save/delete
+public interface TeachingClassRosterEntryRepository extends Repository<TeachingClassRosterEntry, Long> {
+
+    List<TeachingClassRosterEntry> findByTeachingClassIdAndStatusOrderByStudentId(Long teachingClassId, String status);
+}
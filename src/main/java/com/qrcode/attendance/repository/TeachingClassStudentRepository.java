@@ -1,5 +1,7 @@
 package com.qrcode.attendance.repository;
 
+import com.qrcode.attendance.dto.RosterKey;
+import com.qrcode.attendance.dto.RosterStudent;
 import com.qrcode.attendance.entity.TeachingClass;
 import com.qrcode.attendance.entity.TeachingClassStudent;
 import com.qrcode.attendance.entity.Student;
@@ -16,10 +18,33 @@ public interface TeachingClassStudentRepository extends JpaRepository<TeachingCl
     Optional<TeachingClassStudent> findByTeachingClassAndStudent(TeachingClass teachingClass, Student student);
     boolean existsByTeachingClassAndStudent(TeachingClass teachingClass, Student student);
 
-    @Query("SELECT tcs.student FROM TeachingClassStudent tcs WHERE tcs.teachingClass = :teachingClass AND tcs.status = 'ACTIVE'")
-    List<Student> findActiveStudentsByTeachingClass(@Param("teachingClass") TeachingClass teachingClass);
-
     @Query("SELECT COUNT(tcs) FROM TeachingClassStudent tcs WHERE tcs.teachingClass = :teachingClass AND tcs.status = 'ACTIVE'")
     long countActiveStudentsByTeachingClass(@Param("teachingClass") TeachingClass teachingClass);
 
+    // 学生当前是否在读该教学班
+    @Query("SELECT COUNT(tcs) > 0 FROM TeachingClassStudent tcs " +
+            "WHERE tcs.teachingClass.id = :teachingClassId AND tcs.student.id = :studentPk AND tcs.status = 'ACTIVE'")
+    boolean isActiveStudent(@Param("teachingClassId") Long teachingClassId, @Param("studentPk") Long studentPk);
+
+    // 签到花名册：只取学生主键和学号
+    @Query("SELECT new com.qrcode.attendance.dto.RosterKey(s.id, s.studentId) FROM TeachingClassStudent tcs JOIN tcs.student s " +
+            "WHERE tcs.teachingClass.id = :teachingClassId AND tcs.status = 'ACTIVE'")
+    List<RosterKey> findActiveRosterKeysByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 出勤矩阵的行：在读学生，按学号排序
+    @Query("SELECT new com.qrcode.attendance.dto.RosterStudent(s.id, s.studentId, s.name, s.className) " +
+            "FROM TeachingClassStudent tcs JOIN tcs.student s " +
+            "WHERE tcs.teachingClass.id = :teachingClassId AND tcs.status = 'ACTIVE' ORDER BY s.studentId")
+    List<RosterStudent> findActiveRosterByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 教学班全部选课记录（含已退课）：(选课记录ID, 学生主键, 状态)
+    @Query("SELECT tcs.id, tcs.student.id, tcs.status FROM TeachingClassStudent tcs WHERE tcs.teachingClass.id = :teachingClassId")
+    List<Object[]> findEnrollmentKeysByTeachingClassId(@Param("teachingClassId") Long teachingClassId);
+
+    // 某教师各教学班的在读人数：(教学班ID, 人数)
+    @Query("SELECT tcs.teachingClass.id, COUNT(tcs) FROM TeachingClassStudent tcs " +
+            "WHERE tcs.teachingClass.teacher.id = :teacherId AND tcs.status = 'ACTIVE' " +
+            "GROUP BY tcs.teachingClass.id")
+    List<Object[]> countActiveStudentsGroupByTeachingClass(@Param("teacherId") Long teacherId);
+
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// 签到码分配器：在 6 位数字空间上用乘法置换 code = 100000 + (a * i + b) mod 900000 依次发放签到码，
+// a 与 900000 互质保证一个周期内不重复；同时维护未结束会话占用的签到码集合，跳过仍被占用的码。
+// 会话结束后签到码进入冷却期，冷却期内不再发出，旧二维码不会马上指向新会话。
+// 置换参数每次启动重新生成，冷却期不依赖它：启动时按会话结束时间从数据库恢复
+@Component
+@Slf4j
+public class AttendanceCodeAllocator {
+
+    private static final int CODE_MIN = 100000;
+    private static final int CODE_SPACE = 900000;
+
+    private final AttendanceSessionRepository attendanceSessionRepository;
+    private final Duration cooldown;
+
+    private final Set<String> heldCodes = ConcurrentHashMap.newKeySet();
+    // 冷却中的签到码 -> 冷却结束时间
+    private final ConcurrentMap<String, LocalDateTime> coolingCodes = new ConcurrentHashMap<>();
+    private long multiplier;
+    private long offset;
+    private long cursor;
+
+    // 统计
+    private long allocatedCount;
+    private long collisionCount;
+    private long reclaimedCount;
+
+    public AttendanceCodeAllocator(AttendanceSessionRepository attendanceSessionRepository,
+                                   @Value("${app.attendance.code.cooldown-hours:24}") long cooldownHours) {
+        this.attendanceSessionRepository = attendanceSessionRepository;
+        this.cooldown = Duration.ofHours(cooldownHours);
+    }
+
+    @PostConstruct
+    public void init() {
+        SecureRandom random = new SecureRandom();
+        long a;
+        do {
+            a = 1 + random.nextInt(CODE_SPACE - 1);
+        } while (a % 2 == 0 || a % 3 == 0 || a % 5 == 0); // 900000 = 2^5 * 3^2 * 5^5
+        multiplier = a;
+        offset = random.nextInt(CODE_SPACE);
+
+        // 启动时登记未结束会话占用的签到码，以及冷却期内结束的会话的签到码；冷却从会话结束时算起，
+        // 同一个码被多个会话用过时取最晚的结束时间
+        heldCodes.addAll(attendanceSessionRepository.findLiveAttendanceCodes());
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : attendanceSessionRepository.findAttendanceCodesEndedSince(now.minus(cooldown))) {
+            String code = (String) row[0];
+            LocalDateTime until = ((LocalDateTime) row[1]).plus(cooldown);
+            if (!heldCodes.contains(code) && until.isAfter(now)) {
+                coolingCodes.merge(code, until, (x, y) -> x.isAfter(y) ? x : y);
+            }
+        }
+        log.info("签到码分配器初始化完成，已占用签到码: {}，冷却中: {}", heldCodes.size(), coolingCodes.size());
+    }
+
+    // 在事务中分配时，事务回滚则直接归还（签到码没有对外发布过，不需要冷却）
+    public synchronized String allocate() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int attempt = 0; attempt < CODE_SPACE; attempt++) {
+            String code = String.valueOf(CODE_MIN + (multiplier * cursor + offset) % CODE_SPACE);
+            cursor = (cursor + 1) % CODE_SPACE;
+            if (isCooling(code, now)) {
+                collisionCount++;
+                continue;
+            }
+            if (heldCodes.add(code)) {
+                allocatedCount++;
+                onRollback(() -> heldCodes.remove(code));
+                return code;
+            }
+            collisionCount++;
+        }
+        throw new RuntimeException("签到码已用尽，请稍后重试");
+    }
+
+    // 会话结束后归还签到码，进入冷却期（在事务中调用时等提交后再生效）
+    public void release(String code) {
+        if (code == null) {
+            return;
+        }
+        afterCommit(() -> {
+            if (heldCodes.contains(code)) {
+                coolingCodes.put(code, LocalDateTime.now().plus(cooldown));
+                heldCodes.remove(code);
+                synchronized (this) {
+                    reclaimedCount++;
+                }
+            }
+        });
+    }
+
+    private boolean isCooling(String code, LocalDateTime now) {
+        LocalDateTime until = coolingCodes.get(code);
+        if (until == null) {
+            return false;
+        }
+        if (until.isAfter(now)) {
+            return true;
+        }
+        coolingCodes.remove(code, until);
+        return false;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", CODE_SPACE);
+        metrics.put("heldCount", heldCodes.size());
+        metrics.put("coolingCount", coolingCodes.size());
+        metrics.put("allocatedCount", allocatedCount);
+        metrics.put("collisionCount", collisionCount);
+        metrics.put("reclaimedCount", reclaimedCount);
+        metrics.put("utilization", (double) heldCodes.size() / CODE_SPACE * 100);
+        return metrics;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
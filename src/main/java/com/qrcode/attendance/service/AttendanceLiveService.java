@@ -0,0 +1,287 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.AttendanceRosterRow;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 签到实时推送：每个签到会话在内存中维护计数器，由 signIn 增量更新，
+// 通过 SSE 推给正在查看签到详情的教师，查看人数再多也不会重新计算统计。
+// 计数器按学号记录每个学生的签到状态，签到、取消都是幂等的覆盖操作：
+// 从数据库初始化期间到达的事件先缓冲，初始化完成后按顺序重放，不会漏计也不会重复计数。
+// 最后一个订阅者断开后计数器随之丢弃，下次订阅重新初始化。
+// 推送在持有会话锁时放入单线程发送队列，教师看到的事件顺序与计数变化的顺序一致
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttendanceLiveService {
+
+    private static final long EMITTER_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private final AttendanceRecordRepository attendanceRecordRepository;
+
+    private final ConcurrentMap<Long, LiveSession> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "attendance-live-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+        sessions.values().forEach(live -> live.emitters.forEach(SseEmitter::complete));
+    }
+
+    public SseEmitter subscribe(Long sessionId) {
+        return subscribe(sessionId, new SseEmitter(EMITTER_TIMEOUT_MILLIS));
+    }
+
+    SseEmitter subscribe(Long sessionId, SseEmitter emitter) {
+        LiveSession live = attach(sessionId, emitter);
+        emitter.onCompletion(() -> detach(live, emitter));
+        emitter.onTimeout(() -> detach(live, emitter));
+        emitter.onError(e -> detach(live, emitter));
+
+        // 第一个订阅者从数据库初始化计数器，其余订阅者等待初始化完成
+        try {
+            awaitLoaded(live);
+        } catch (RuntimeException e) {
+            detach(live, emitter);
+            throw e;
+        }
+
+        synchronized (live) {
+            Map<String, Object> snapshot = live.totals();
+            publisher.execute(() -> send(live, emitter, "snapshot", snapshot));
+        }
+        return emitter;
+    }
+
+    // 新的签到（含迟到）
+    public void onSignIn(Long sessionId, String studentId, String status, LocalDateTime signinTime) {
+        LiveSession live = sessions.get(sessionId);
+        if (live == null) {
+            return; // 没有人在看，不需要维护计数
+        }
+
+        synchronized (live) {
+            if (!live.loaded) {
+                live.buffered.add(new Change(studentId, status));
+                return;
+            }
+            live.apply(studentId, status);
+            Map<String, Object> event = live.totals();
+            event.put("studentId", studentId);
+            event.put("status", status);
+            event.put("signinTime", signinTime.toString());
+            broadcast(live, "LATE".equals(status) ? "late" : "signin", event);
+        }
+    }
+
+    // 教师取消签到
+    public void onCancel(Long sessionId, String studentId) {
+        LiveSession live = sessions.get(sessionId);
+        if (live == null || studentId == null) {
+            return;
+        }
+
+        synchronized (live) {
+            if (!live.loaded) {
+                live.buffered.add(new Change(studentId, null));
+                return;
+            }
+            live.apply(studentId, null);
+            broadcast(live, "cancel", live.totals());
+        }
+    }
+
+    // 签到结束：推送最终计数后关闭连接
+    public void close(Long sessionId) {
+        LiveSession live = sessions.remove(sessionId);
+        if (live == null) {
+            return;
+        }
+        synchronized (live) {
+            live.closed = true;
+            live.notifyAll();
+            Map<String, Object> event = live.totals();
+            publisher.execute(() -> {
+                for (SseEmitter emitter : live.emitters) {
+                    send(live, emitter, "ended", event);
+                    emitter.complete();
+                }
+            });
+        }
+    }
+
+    // 当前计数，没有人订阅或尚未初始化完成时返回 null
+    public Map<String, Object> getTotals(Long sessionId) {
+        LiveSession live = sessions.get(sessionId);
+        if (live == null) {
+            return null;
+        }
+        synchronized (live) {
+            return live.loaded ? live.totals() : null;
+        }
+    }
+
+    // 当前维护计数器的会话数
+    public int liveSessionCount() {
+        return sessions.size();
+    }
+
+    private LiveSession attach(Long sessionId, SseEmitter emitter) {
+        while (true) {
+            LiveSession live = sessions.computeIfAbsent(sessionId, LiveSession::new);
+            synchronized (live) {
+                // 最后一个订阅者刚断开，计数器已丢弃：重新取一个
+                if (!live.closed) {
+                    live.emitters.add(emitter);
+                    return live;
+                }
+            }
+        }
+    }
+
+    private void detach(LiveSession live, SseEmitter emitter) {
+        synchronized (live) {
+            if (!live.emitters.remove(emitter) || !live.emitters.isEmpty() || live.closed) {
+                return;
+            }
+            live.closed = true;
+        }
+        sessions.remove(live.sessionId, live);
+    }
+
+    private void awaitLoaded(LiveSession live) {
+        synchronized (live) {
+            if (live.loading) {
+                while (!live.loaded) {
+                    if (live.closed) {
+                        throw new RuntimeException("签到统计初始化失败，请刷新页面重试");
+                    }
+                    try {
+                        live.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("签到统计初始化被中断", e);
+                    }
+                }
+                return;
+            }
+            live.loading = true;
+        }
+
+        // 查询在锁外进行，期间的签到、取消事件进入缓冲
+        List<AttendanceRosterRow> rows;
+        try {
+            rows = attendanceRecordRepository.findRosterWithRecordsBySessionId(live.sessionId);
+        } catch (RuntimeException e) {
+            synchronized (live) {
+                live.closed = true;
+                live.notifyAll();
+            }
+            sessions.remove(live.sessionId, live);
+            throw e;
+        }
+
+        synchronized (live) {
+            live.totalStudentCount = rows.size();
+            for (AttendanceRosterRow row : rows) {
+                live.apply(row.studentId(), row.status());
+            }
+            // 重放初始化期间到达的事件：查询结果可能已包含其中一部分，覆盖操作重复执行不影响结果
+            for (Change change : live.buffered) {
+                live.apply(change.studentId(), change.status());
+            }
+            live.buffered.clear();
+            live.loaded = true;
+            live.notifyAll();
+        }
+    }
+
+    // 在 synchronized (live) 内调用：只入队不发送，入队顺序即发送顺序
+    private void broadcast(LiveSession live, String name, Map<String, Object> data) {
+        if (live.emitters.isEmpty()) {
+            return;
+        }
+        publisher.execute(() -> {
+            for (SseEmitter emitter : live.emitters) {
+                send(live, emitter, name, data);
+            }
+        });
+    }
+
+    private void send(LiveSession live, SseEmitter emitter, String name, Map<String, Object> data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // 浏览器已断开
+            detach(live, emitter);
+            log.debug("签到推送连接已断开: {}", e.getMessage());
+        }
+    }
+
+    // 签到（status 为 PRESENT / LATE）或取消签到（status 为 null）
+    private record Change(String studentId, String status) {
+    }
+
+    // 除 emitters 外的字段都在 synchronized (this) 下访问
+    private static final class LiveSession {
+        private final Long sessionId;
+        private int totalStudentCount;
+        private long presentCount;
+        private long lateCount;
+        // 学号 -> 签到状态，只包含已签到的学生
+        private final Map<String, String> signed = new HashMap<>();
+        private final List<Change> buffered = new ArrayList<>();
+        private boolean loading;
+        private boolean loaded;
+        private boolean closed;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        LiveSession(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        void apply(String studentId, String status) {
+            String previous = status == null ? signed.remove(studentId) : signed.put(studentId, status);
+            count(previous, -1);
+            count(status, 1);
+        }
+
+        private void count(String status, int delta) {
+            if ("PRESENT".equals(status)) {
+                presentCount += delta;
+            } else if ("LATE".equals(status)) {
+                lateCount += delta;
+            }
+        }
+
+        Map<String, Object> totals() {
+            long signedCount = presentCount + lateCount;
+            Map<String, Object> totals = new HashMap<>();
+            totals.put("totalStudentCount", totalStudentCount);
+            totals.put("presentCount", presentCount);
+            totals.put("lateCount", lateCount);
+            totals.put("absentCount", Math.max(0, totalStudentCount - signedCount));
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.qrcode.attendance.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+// 签到记录组提交：签到请求把记录交给写入线程后等待事务提交，写入线程每次把队列中积压的记录合并成
+// 一个事务用 JDBC 批量写入。只有提交成功才向学生确认签到，进程崩溃或重新部署不会丢失已确认的签到；
+// 空闲时单条记录立即写入，高峰时请求在等待上一批提交的同时自然攒成下一批
+@Component
+@Slf4j
+public class AttendanceRecordWriteBehind {
+
+    // (会话, 学生) 唯一，已存在时保留原记录不变，多实例并发写入也不会产生重复行
+    private static final String INSERT_RECORD_SQL =
+            "INSERT INTO attendance_records (attendance_session_id, student_id, signin_time, status) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE attendance_session_id = attendance_session_id";
+    // 汇总表增量累加；汇总行不存在时更新 0 行，由读取或结束签到时校准补齐
+    private static final String UPDATE_SUMMARY_SQL =
+            "UPDATE attendance_session_summaries SET present_count = present_count + ?, late_count = late_count + ?, " +
+            "first_signin_time = CASE WHEN first_signin_time IS NULL OR first_signin_time > ? THEN ? ELSE first_signin_time END, " +
+            "last_signin_time = CASE WHEN last_signin_time IS NULL OR last_signin_time < ? THEN ? ELSE last_signin_time END, " +
+            "update_time = ? WHERE attendance_session_id = ?";
+    private static final String SELECT_RECORDS_SQL =
+            "SELECT id, student_id, signin_time, status FROM attendance_records WHERE attendance_session_id = ? AND student_id IN ";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long awaitTimeoutMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    // 已交给写入线程、事务尚未提交的记录；提交（或最终失败）后才移除
+    private final ConcurrentMap<RecordKey, PendingWrite> inFlight = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public record PendingRecord(Long sessionId, Long studentPk, LocalDateTime signinTime, String status) {
+    }
+
+    // 已落库的签到记录；inserted 为 false 表示 (会话, 学生) 已有记录，返回的是原有记录
+    public record WrittenRecord(Long id, LocalDateTime signinTime, String status, boolean inserted) {
+
+        WrittenRecord asExisting() {
+            return new WrittenRecord(id, signinTime, status, false);
+        }
+    }
+
+    private record RecordKey(Long sessionId, Long studentPk) {
+    }
+
+    private static final class PendingWrite {
+        private final PendingRecord record;
+        private final RecordKey key;
+        private final CompletableFuture<WrittenRecord> result = new CompletableFuture<>();
+
+        PendingWrite(PendingRecord record) {
+            this.record = record;
+            this.key = new RecordKey(record.sessionId(), record.studentPk());
+        }
+    }
+
+    // 一批签到按会话合并后的汇总增量
+    private static final class SummaryDelta {
+        private final Long sessionId;
+        private int presentCount;
+        private int lateCount;
+        private LocalDateTime firstSigninTime;
+        private LocalDateTime lastSigninTime;
+
+        SummaryDelta(Long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        void add(PendingRecord record) {
+            if ("PRESENT".equals(record.status())) {
+                presentCount++;
+            } else if ("LATE".equals(record.status())) {
+                lateCount++;
+            }
+            if (firstSigninTime == null || record.signinTime().isBefore(firstSigninTime)) {
+                firstSigninTime = record.signinTime();
+            }
+            if (lastSigninTime == null || record.signinTime().isAfter(lastSigninTime)) {
+                lastSigninTime = record.signinTime();
+            }
+        }
+    }
+
+    public AttendanceRecordWriteBehind(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.attendance.write-behind.batch-size:100}") int batchSize,
+                                       @Value("${app.attendance.write-behind.await-timeout-ms:5000}") long awaitTimeoutMillis,
+                                       @Value("${app.attendance.write-behind.capacity:10000}") int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 独立事务提交，不受调用方事务回滚影响
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::runLoop, "attendance-write-behind");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    // 应用关闭时停止接收，写完队列中剩余的签到
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("签到写入队列已清空");
+    }
+
+    // 提交一条签到记录，返回落库结果；同一 (会话, 学生) 已在写入中时直接复用那一次写入的结果
+    public CompletableFuture<WrittenRecord> submit(PendingRecord record) {
+        PendingWrite write = new PendingWrite(record);
+        PendingWrite existing = inFlight.putIfAbsent(write.key, write);
+        if (existing != null) {
+            return existing.result.thenApply(WrittenRecord::asExisting);
+        }
+        if (!running || !queue.offer(write)) {
+            // 队列已满或正在关闭：在调用线程中同步写入，对签到请求形成背压
+            log.warn("签到写入队列已满，同步写入 - sessionId: {}, studentPk: {}", record.sessionId(), record.studentPk());
+            writeWithRetry(List.of(write));
+        }
+        return write.result;
+    }
+
+    // 等待写入结果：超时说明写入线程积压，记录稍后仍会落库，告诉学生稍后查看；最终失败则请学生重试
+    public WrittenRecord await(CompletableFuture<WrittenRecord> result) {
+        try {
+            return result.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SignInRejectedException("pending", "签到正在处理中，请稍后刷新页面查看结果");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignInRejectedException("pending", "签到正在处理中，请稍后刷新页面查看结果");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("签到保存失败，请重试", e.getCause());
+        }
+    }
+
+    // 该学生在该会话中正在写入的记录（尚未提交），不等待写入结果
+    public PendingRecord findInFlight(Long sessionId, Long studentPk) {
+        PendingWrite write = inFlight.get(new RecordKey(sessionId, studentPk));
+        return write == null ? null : write.record;
+    }
+
+    // 该会话中正在写入的学生主键，重新加载花名册时与已落库的记录合并
+    public List<Long> findInFlightStudentPks(Long sessionId) {
+        List<Long> studentPks = new ArrayList<>();
+        for (RecordKey key : inFlight.keySet()) {
+            if (key.sessionId().equals(sessionId)) {
+                studentPks.add(key.studentPk());
+            }
+        }
+        return studentPks;
+    }
+
+    public int pendingCount() {
+        return inFlight.size();
+    }
+
+    // 等待该会话正在写入的签到提交完成（结束签到、校准汇总前调用），不在调用线程中写库
+    public void awaitSession(Long sessionId) {
+        awaitInFlight(key -> key.sessionId().equals(sessionId), "sessionId: " + sessionId);
+    }
+
+    // 等待当前正在写入的全部签到提交完成（导出前调用），之后到达的签到不等待
+    public void awaitAll() {
+        awaitInFlight(key -> true, "全部会话");
+    }
+
+    private void awaitInFlight(Predicate<RecordKey> filter, String scope) {
+        List<CompletableFuture<WrittenRecord>> pending = new ArrayList<>();
+        for (PendingWrite write : inFlight.values()) {
+            if (filter.test(write.key)) {
+                pending.add(write.result);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                    .get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 失败的记录已在写入线程中记录日志并通知签到请求
+        } catch (TimeoutException e) {
+            log.warn("等待签到写入超时 - {}, 条数: {}", scope, pending.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("签到批量写入失败", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeWithRetry(List<PendingWrite> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                complete(batch, writeBatch(batch));
+                return;
+            } catch (Exception e) {
+                log.warn("签到批量写入失败，第{}次 - 条数: {}", attempt, batch.size(), e);
+            }
+        }
+
+        // 整批重试仍失败，逐条写入以隔离出问题的记录；仍失败的通知签到请求，由请求方归还签到位
+        for (PendingWrite write : batch) {
+            try {
+                complete(List.of(write), writeBatch(List.of(write)));
+            } catch (Exception e) {
+                PendingRecord record = write.record;
+                log.error("签到记录写入失败 - sessionId: {}, studentPk: {}, signinTime: {}",
+                        record.sessionId(), record.studentPk(), record.signinTime(), e);
+                inFlight.remove(write.key, write);
+                write.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // 事务已提交：先移出写入中，再通知等待的签到请求
+    private void complete(List<PendingWrite> batch, Map<PendingWrite, WrittenRecord> results) {
+        for (PendingWrite write : batch) {
+            inFlight.remove(write.key, write);
+            write.result.complete(results.get(write));
+        }
+    }
+
+    private Map<PendingWrite, WrittenRecord> writeBatch(List<PendingWrite> batch) {
+        return transactionTemplate.execute(status -> {
+            Map<Long, List<PendingWrite>> bySession = new LinkedHashMap<>();
+            for (PendingWrite write : batch) {
+                bySession.computeIfAbsent(write.key.sessionId(), id -> new ArrayList<>()).add(write);
+            }
+
+            // 已有记录的学生不再插入，也不计入汇总；一批中同一学生只插入第一条
+            List<PendingRecord> inserts = new ArrayList<>(batch.size());
+            Set<PendingWrite> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+            Map<Long, SummaryDelta> deltas = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<PendingWrite>> entry : bySession.entrySet()) {
+                Set<Long> signed = new HashSet<>(findRecords(entry.getKey(), entry.getValue()).keySet());
+                for (PendingWrite write : entry.getValue()) {
+                    if (signed.add(write.key.studentPk())) {
+                        inserts.add(write.record);
+                        inserted.add(write);
+                        deltas.computeIfAbsent(write.key.sessionId(), SummaryDelta::new).add(write.record);
+                    }
+                }
+            }
+
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_RECORD_SQL, inserts, inserts.size(), (ps, record) -> {
+                    ps.setLong(1, record.sessionId());
+                    ps.setLong(2, record.studentPk());
+                    ps.setTimestamp(3, Timestamp.valueOf(record.signinTime()));
+                    ps.setString(4, record.status());
+                });
+                updateSummaries(deltas.values());
+            }
+
+            // 带主键返回每条签到对应的记录（新插入的或原有的）
+            Map<PendingWrite, WrittenRecord> results = new IdentityHashMap<>();
+            for (Map.Entry<Long, List<PendingWrite>> entry : bySession.entrySet()) {
+                Map<Long, WrittenRecord> rows = findRecords(entry.getKey(), entry.getValue());
+                for (PendingWrite write : entry.getValue()) {
+                    WrittenRecord row = rows.get(write.key.studentPk());
+                    if (row == null) {
+                        throw new IllegalStateException("签到记录写入后未找到 - sessionId: " + write.key.sessionId()
+                                + ", studentPk: " + write.key.studentPk());
+                    }
+                    results.put(write, inserted.contains(write) ? row : row.asExisting());
+                }
+            }
+            return results;
+        });
+    }
+
+    // 按学生主键查询该会话中已有的签到记录（inserted 先置为 true，由调用方区分）
+    private Map<Long, WrittenRecord> findRecords(Long sessionId, List<PendingWrite> writes) {
+        List<Object> args = new ArrayList<>(writes.size() + 1);
+        args.add(sessionId);
+        StringBuilder sql = new StringBuilder(SELECT_RECORDS_SQL).append('(');
+        for (int i = 0; i < writes.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args.add(writes.get(i).key.studentPk());
+        }
+        sql.append(')');
+
+        Map<Long, WrittenRecord> rows = new HashMap<>(writes.size() * 4 / 3 + 1);
+        jdbcTemplate.query(sql.toString(), rs -> {
+            rows.put(rs.getLong("student_id"), new WrittenRecord(rs.getLong("id"),
+                    rs.getTimestamp("signin_time").toLocalDateTime(), rs.getString("status"), true));
+        }, args.toArray());
+        return rows;
+    }
+
+    private void updateSummaries(Collection<SummaryDelta> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPDATE_SUMMARY_SQL, deltas, deltas.size(), (ps, delta) -> {
+            Timestamp first = Timestamp.valueOf(delta.firstSigninTime);
+            Timestamp last = Timestamp.valueOf(delta.lastSigninTime);
+            ps.setInt(1, delta.presentCount);
+            ps.setInt(2, delta.lateCount);
+            ps.setTimestamp(3, first);
+            ps.setTimestamp(4, first);
+            ps.setTimestamp(5, last);
+            ps.setTimestamp(6, last);
+            ps.setTimestamp(7, now);
+            ps.setLong(8, delta.sessionId);
+        });
+    }
+}
@@ -1,7 +1,16 @@
 package com.qrcode.attendance.service;
 
+import com.qrcode.attendance.config.SqlBudget;
+import com.qrcode.attendance.dto.AttendanceHistoryRow;
+import com.qrcode.attendance.dto.AttendanceMatrix;
+import com.qrcode.attendance.dto.AttendanceRosterRow;
+import com.qrcode.attendance.dto.AttendanceSessionSnapshot;
+import com.qrcode.attendance.dto.KeysetPage;
+import com.qrcode.attendance.dto.SignInResult;
 import com.qrcode.attendance.entity.*;
 import com.qrcode.attendance.repository.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -10,6 +19,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,140 +31,264 @@ public class AttendanceService {
     private final AttendanceRecordRepository attendanceRecordRepository;
     private final TeachingClassStudentRepository teachingClassStudentRepository;
     private final StudentRepository studentRepository;
+    private final SignInAdmissionEngine signInAdmissionEngine;
+    private final AttendanceRecordWriteBehind attendanceRecordWriteBehind;
+    private final AttendanceSessionCache attendanceSessionCache;
+    private final AttendanceCodeAllocator attendanceCodeAllocator;
+    private final AttendanceLiveService attendanceLiveService;
+    private final RosterCountCache rosterCountCache;
+    private final AttendanceSessionSummaryService attendanceSessionSummaryService;
+    private final AttendanceSessionScheduler attendanceSessionScheduler;
+    private final MeterRegistry meterRegistry;
+
     @Transactional
     public AttendanceSession createAttendanceSession(AttendanceSession session) {
-        // 生成签到码（6位随机数字）
-        String attendanceCode = generateAttendanceCode();
-        session.setAttendanceCode(attendanceCode);
+        // 分配签到码（6位数字，不与未结束或冷却中的会话冲突；事务回滚时归还）
+        session.setAttendanceCode(attendanceCodeAllocator.allocate());
         session.setStatus("CREATED");
 
-        return attendanceSessionRepository.save(session);
+        AttendanceSession saved = attendanceSessionRepository.save(session);
+        attendanceSessionSummaryService.create(saved);
+        attendanceSessionCache.put(saved);
+        attendanceSessionScheduler.scheduleStart(saved);
+        return saved;
     }
 
     @Transactional
-    public AttendanceSession startAttendanceSession(Long sessionId) {
-        AttendanceSession session = attendanceSessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("签到会话不存在"));
-
+    public AttendanceSession startAttendanceSession(Long sessionId, Long teacherId) {
+        AttendanceSession session = attendanceSessionRepository.findOwnedById(sessionId, teacherId)
+                .orElseThrow(() -> new RuntimeException("签到会话不存在或无权操作"));
+
+        // 到开始时间已被自动开始的，教师再点"开始"直接返回，同时用数据库状态刷新缓存
+        if ("STARTED".equals(session.getStatus())) {
+            attendanceSessionCache.put(session);
+            return session;
+        }
         if (!"CREATED".equals(session.getStatus())) {
             throw new RuntimeException("签到会话状态不正确");
         }
 
-        session.setStatus("STARTED");
         session.setStartTime(LocalDateTime.now());
+        return activate(session);
+    }
+
+    // 调度器开始到点的会话，每个会话一个事务；状态已变化或开始时间被推迟的跳过
+    @Transactional
+    public boolean startDueSession(Long sessionId) {
+        AttendanceSession session = attendanceSessionRepository.findById(sessionId).orElse(null);
+        if (session == null || !"CREATED".equals(session.getStatus())
+                || session.getStartTime().isAfter(LocalDateTime.now())) {
+            return false;
+        }
+        activate(session);
+        return true;
+    }
+
+    private AttendanceSession activate(AttendanceSession session) {
+        session.setStatus("STARTED");
+
+        // 加载花名册，签到时在内存中完成准入检查
+        signInAdmissionEngine.open(session.getId(), session.getTeachingClass().getId());
 
-        return attendanceSessionRepository.save(session);
+        AttendanceSession saved = attendanceSessionRepository.save(session);
+        attendanceSessionSummaryService.refreshRosterSize(saved);
+        attendanceSessionCache.put(saved);
+        attendanceSessionScheduler.scheduleEnd(saved);
+        return saved;
     }
 
     @Transactional
-    public AttendanceSession endAttendanceSession(Long sessionId) {
-        AttendanceSession session = attendanceSessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("签到会话不存在"));
+    public AttendanceSession endAttendanceSession(Long sessionId, Long teacherId) {
+        AttendanceSession session = attendanceSessionRepository.findOwnedById(sessionId, teacherId)
+                .orElseThrow(() -> new RuntimeException("签到会话不存在或无权操作"));
 
         if (!"STARTED".equals(session.getStatus())) {
             throw new RuntimeException("签到会话状态不正确");
         }
 
-        session.setStatus("ENDED");
         session.setEndTime(LocalDateTime.now());
-
-        return attendanceSessionRepository.save(session);
+        return finish(session);
     }
 
+    // 调度器结束到点的会话，每个会话一个事务；已手动结束或结束时间被延后的跳过
     @Transactional
-    public AttendanceRecord signIn(String attendanceCode, String studentId) {
-        // 查找签到会话
-        AttendanceSession session = attendanceSessionRepository.findByAttendanceCode(attendanceCode)
-                .orElseThrow(() -> new RuntimeException("签到码无效"));
+    public boolean endDueSession(Long sessionId) {
+        AttendanceSession session = attendanceSessionRepository.findById(sessionId).orElse(null);
+        if (session == null || !"STARTED".equals(session.getStatus())
+                || session.getEndTime().isAfter(LocalDateTime.now())) {
+            return false;
+        }
+        finish(session);
+        return true;
+    }
+
+    private AttendanceSession finish(AttendanceSession session) {
+        Long sessionId = session.getId();
+        session.setStatus("ENDED");
+
+        // 先关闭准入，再等该会话正在写入的签到提交完成，之后不会再有新的签到写入
+        signInAdmissionEngine.close(sessionId);
+        attendanceRecordWriteBehind.awaitSession(sessionId);
+
+        AttendanceSession saved = attendanceSessionRepository.save(session);
+        // 签到已全部落库，按记录校准汇总
+        attendanceSessionSummaryService.reconcile(saved);
+        attendanceSessionCache.put(saved);
+        attendanceCodeAllocator.release(saved.getAttendanceCode());
+        attendanceLiveService.close(sessionId);
+        return saved;
+    }
+
+    // 签到耗时按结果分别计时：success / late / duplicate / 各拒绝原因 / error。
+    // 不开启事务：请求线程要等待写入线程提交，期间不能占用连接池中的连接
+    @SqlBudget(3)
+    public SignInResult signIn(String attendanceCode, String studentId) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            SignInResult result = doSignIn(attendanceCode, studentId);
+            if (result.repeated()) {
+                outcome = "duplicate";
+            } else {
+                outcome = "LATE".equals(result.status()) ? "late" : "success";
+            }
+            return result;
+        } catch (SignInRejectedException e) {
+            outcome = e.getReason();
+            meterRegistry.counter("attendance.signin.rejections", "reason", e.getReason()).increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("attendance.signin")
+                    .description("学生签到耗时")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private SignInResult doSignIn(String attendanceCode, String studentId) {
+        // 查找签到会话（缓存）
+        AttendanceSessionSnapshot session = attendanceSessionCache.getByAttendanceCode(attendanceCode);
+        if (session == null) {
+            throw new SignInRejectedException("invalid_code", "签到码无效");
+        }
 
         // 检查签到状态
         if (!"STARTED".equals(session.getStatus())) {
-            throw new RuntimeException("签到未开始或已结束");
+            throw new SignInRejectedException("not_started", "签到未开始或已结束");
         }
 
-        if (LocalDateTime.now().isAfter(session.getEndTime())) {
-            session.setStatus("ENDED");
-            attendanceSessionRepository.save(session);
-            throw new RuntimeException("签到已结束");
+        // 到点的状态变更由调度器完成，这里只拒绝，不写数据库
+        if (session.isExpired(LocalDateTime.now())) {
+            throw new SignInRejectedException("expired", "签到已结束");
         }
 
-        // 查找学生
-        Student student = studentRepository.findByStudentId(studentId)
-                .orElseThrow(() -> new RuntimeException("学生不存在"));
-
-        // 检查学生是否在该教学班中
-        boolean isInClass = teachingClassStudentRepository.existsByTeachingClassAndStudent(
-                session.getTeachingClass(), student);
+        // 花名册和重复签到检查在内存中完成
+        SignInAdmissionEngine.Admission admission = signInAdmissionEngine.admit(
+                session.getId(), session.getTeachingClassId(), studentId);
 
-        if (!isInClass) {
-            throw new RuntimeException("您不在该课程中，无法签到");
+        // 结束事务提交前会话缓存仍是 STARTED，由准入引擎的关闭标记拒绝
+        if (admission.result() == SignInAdmissionEngine.Result.CLOSED) {
+            throw new SignInRejectedException("not_started", "签到未开始或已结束");
         }
 
-        // 检查是否已签到
-        Optional<AttendanceRecord> existingRecord = attendanceRecordRepository
-                .findByAttendanceSessionAndStudent(session, student);
+        if (admission.result() == SignInAdmissionEngine.Result.NOT_ENROLLED) {
+            // 只有被拒绝时才区分"学生不存在"和"不在课程中"
+            if (!studentRepository.existsByStudentId(studentId)) {
+                throw new SignInRejectedException("unknown_student", "学生不存在");
+            }
+            throw new SignInRejectedException("not_enrolled", "您不在该课程中，无法签到");
+        }
 
-        if (existingRecord.isPresent()) {
-            throw new RuntimeException("您已经签到过了");
+        if (admission.result() == SignInAdmissionEngine.Result.ALREADY_SIGNED) {
+            // 幂等：签到位属于首次提交，重复提交既不归还也不重新准入，只返回首次签到的记录
+            return findSignedRecord(session.getId(), admission.studentPk(), studentId);
         }
 
-        // 创建签到记录
-        AttendanceRecord record = new AttendanceRecord();
-        record.setAttendanceSession(session);
-        record.setStudent(student);
-        record.setSigninTime(LocalDateTime.now());
+        LocalDateTime signinTime = LocalDateTime.now();
 
         // 判断是否迟到
-        LocalDateTime startTime = session.getStartTime();
-        long minutesLate = java.time.Duration.between(startTime, record.getSigninTime()).toMinutes();
-        if (minutesLate > 5) { // 超过5分钟算迟到
-            record.setStatus("LATE");
-        } else {
-            record.setStatus("PRESENT");
+        long minutesLate = java.time.Duration.between(session.getStartTime(), signinTime).toMinutes();
+        String status = minutesLate > 5 ? "LATE" : "PRESENT"; // 超过5分钟算迟到
+
+        // 签到记录交给写入线程批量提交，提交成功后才确认签到
+        Long sessionId = session.getId();
+        Long studentPk = admission.studentPk();
+        CompletableFuture<AttendanceRecordWriteBehind.WrittenRecord> pending;
+        try {
+            pending = attendanceRecordWriteBehind.submit(
+                    new AttendanceRecordWriteBehind.PendingRecord(sessionId, studentPk, signinTime, status));
+        } catch (RuntimeException e) {
+            signInAdmissionEngine.release(sessionId, studentPk);
+            throw e;
         }
+        // 最终写入失败时归还签到位，允许学生重试（包括本请求等待超时之后才失败的）
+        pending.whenComplete((written, e) -> {
+            if (e != null) {
+                signInAdmissionEngine.release(sessionId, studentPk);
+            }
+        });
+        AttendanceRecordWriteBehind.WrittenRecord written = attendanceRecordWriteBehind.await(pending);
 
-        // 更新学生的最后签到时间
-        student.setLastSigninTime(LocalDateTime.now());
-        studentRepository.save(student);
+        // 只有真正新增的记录才推送给正在查看签到详情的教师
+        if (written.inserted()) {
+            attendanceLiveService.onSignIn(sessionId, studentId, written.status(), written.signinTime());
+        }
+        return new SignInResult(written.id(), studentId, written.signinTime(), written.status(), !written.inserted(), false);
+    }
 
-        return attendanceRecordRepository.save(record);
+    // 已签到学生的记录：首次提交还在写入中时直接返回"处理中"，不等待写入线程；已提交的按唯一索引查询。
+    // 写入中的记录提交后才移出，两次读取之间不会漏掉
+    private SignInResult findSignedRecord(Long sessionId, Long studentPk, String studentId) {
+        AttendanceRecordWriteBehind.PendingRecord queued = attendanceRecordWriteBehind.findInFlight(sessionId, studentPk);
+        if (queued != null) {
+            return new SignInResult(null, studentId, queued.signinTime(), queued.status(), true, true);
+        }
+        return attendanceRecordRepository.findByAttendanceSessionIdAndStudentId(sessionId, studentPk)
+                .map(record -> new SignInResult(record.getId(), studentId, record.getSigninTime(), record.getStatus(), true, false))
+                // 首次写入刚失败、签到位尚未归还，或教师正在取消该记录：请学生稍后重试
+                .orElseThrow(() -> new SignInRejectedException("pending", "签到正在处理中，请稍后刷新页面查看结果"));
     }
 
+    @SqlBudget(2)
     public Map<String, Object> getAttendanceStatistics(Long sessionId) {
-        AttendanceSession session = attendanceSessionRepository.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("签到会话不存在"));
-
-        // 获取教学班中的学生
-        List<Student> studentsInClass = teachingClassStudentRepository
-                .findActiveStudentsByTeachingClass(session.getTeachingClass());
+        return Timer.builder("attendance.statistics")
+                .description("签到统计耗时")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(() -> computeAttendanceStatistics(sessionId));
+    }
 
-        // 获取已签到的记录
-        List<AttendanceRecord> attendanceRecords = attendanceRecordRepository
-                .findByAttendanceSession(session);
+    // 统计口径：只统计教学班当前在读的学生。签到后退课的学生不计入出勤、迟到，也不出现在明细中，
+    // 因此 出勤 + 迟到 + 缺勤 = 应到人数（旧实现按会话的全部记录计数，可能与应到人数对不上）。
+    // 正在写入的签到尚未向学生确认，统计不包含它们，不需要等待
+    private Map<String, Object> computeAttendanceStatistics(Long sessionId) {
+        // 花名册 LEFT JOIN 签到记录，一次查询
+        List<AttendanceRosterRow> rows = attendanceRecordRepository.findRosterWithRecordsBySessionId(sessionId);
+        if (rows.isEmpty() && !attendanceSessionRepository.existsById(sessionId)) {
+            throw new RuntimeException("签到会话不存在");
+        }
 
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalStudentCount", studentsInClass.size());
-        stats.put("presentCount", attendanceRecordRepository.countPresentByAttendanceSession(session));
-        stats.put("lateCount", attendanceRecordRepository.countLateByAttendanceSession(session));
-        stats.put("absentCount", studentsInClass.size() - attendanceRecords.size());
-        stats.put("attendanceRate", studentsInClass.size() > 0 ?
-                (double) attendanceRecords.size() / studentsInClass.size() * 100 : 0);
-
-        // 详细记录
-        List<Map<String, Object>> detailedRecords = new ArrayList<>();
-        for (Student student : studentsInClass) {
+        // 单次遍历得到计数和明细
+        long presentCount = 0;
+        long lateCount = 0;
+        int signedCount = 0;
+        List<Map<String, Object>> detailedRecords = new ArrayList<>(rows.size());
+        for (AttendanceRosterRow row : rows) {
             Map<String, Object> record = new HashMap<>();
-            record.put("studentId", student.getStudentId());
-            record.put("name", student.getName());
-            record.put("className", student.getClassName());
-
-            Optional<AttendanceRecord> ar = attendanceRecords.stream()
-                    .filter(r -> r.getStudent().getId().equals(student.getId()))
-                    .findFirst();
-
-            if (ar.isPresent()) {
-                record.put("status", ar.get().getStatus());
-                record.put("signinTime", ar.get().getSigninTime());
+            record.put("studentId", row.studentId());
+            record.put("name", row.name());
+            record.put("className", row.className());
+
+            if (row.isSigned()) {
+                signedCount++;
+                if ("PRESENT".equals(row.status())) {
+                    presentCount++;
+                } else if ("LATE".equals(row.status())) {
+                    lateCount++;
+                }
+                record.put("status", row.status());
+                record.put("signinTime", row.signinTime());
                 record.put("isSigned", true);
             } else {
                 record.put("status", "ABSENT");
@@ -165,18 +299,42 @@ public class AttendanceService {
             detailedRecords.add(record);
         }
 
+        int totalStudentCount = rows.size();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalStudentCount", totalStudentCount);
+        stats.put("presentCount", presentCount);
+        stats.put("lateCount", lateCount);
+        stats.put("absentCount", totalStudentCount - signedCount);
+        stats.put("attendanceRate", totalStudentCount > 0 ?
+                (double) signedCount / totalStudentCount * 100 : 0);
         stats.put("detailedRecords", detailedRecords);
 
         return stats;
     }
 
-    private String generateAttendanceCode() {
-        // 生成6位随机数字
-        Random random = new Random();
-        int code = 100000 + random.nextInt(900000);
-        return String.valueOf(code);
+    // 教学班出勤矩阵：花名册、签到会话、签到记录各一条查询
+    @SqlBudget(3)
+    public AttendanceMatrix getAttendanceMatrix(Long teachingClassId) {
+        AttendanceMatrix matrix = new AttendanceMatrix(
+                teachingClassStudentRepository.findActiveRosterByTeachingClassId(teachingClassId),
+                attendanceSessionRepository.findMatrixColumnsByTeachingClassId(teachingClassId));
+        for (Object[] row : attendanceRecordRepository.findMatrixCellsByTeachingClassId(teachingClassId)) {
+            matrix.record((Long) row[0], (Long) row[1], (String) row[2]);
+        }
+        return matrix;
     }
 
+    // 学生签到历史（跨教学班，按时间倒序），键集分页
+    @SqlBudget(1)
+    public KeysetPage<AttendanceHistoryRow> getAttendanceHistory(Long studentPk, String cursor, int size) {
+        return attendanceRecordRepository.findHistoryPage(studentPk, cursor, size);
+    }
+
+    // 学生最后签到时间，由签到记录推导，不在学生表中维护；记录被取消后自动回退到上一次签到
+    @SqlBudget(1)
+    public LocalDateTime getLastSigninTime(Long studentPk) {
+        return attendanceRecordRepository.findLastSigninTimeByStudentId(studentPk);
+    }
 
     public List<AttendanceSession> getActiveSessions() {
         return attendanceSessionRepository.findActiveSessions(LocalDateTime.now());
@@ -195,11 +353,8 @@ public class AttendanceService {
         Map<Long, Integer> totalStudentCountMap = new HashMap<>();
 
         for (TeachingClass tc : teachingClasses) {
-            // 查询每个教学班的有效学生数（status=ACTIVE）
-            List<TeachingClassStudent> students = teachingClassStudentRepository
-                    .findByTeachingClassAndStatus(tc, "ACTIVE"); // 替换为你的实际查询方法
-
-            totalStudentCountMap.put(tc.getId(), students.size());
+            // 每个教学班的有效学生数（status=ACTIVE），按教师缓存，每位教师最多一条 GROUP BY 查询
+            totalStudentCountMap.put(tc.getId(), rosterCountCache.getCount(tc.getTeacher().getId(), tc.getId()));
         }
         return totalStudentCountMap;
     }
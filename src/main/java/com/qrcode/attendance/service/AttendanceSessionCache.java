@@ -0,0 +1,82 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.AttendanceSessionSnapshot;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// 签到码 -> 会话快照缓存，只缓存未结束的会话；创建、开始、结束签到时更新（在事务中调用时等提交后再生效），
+// 结束时间过后在访问时淘汰
+@Component
+@RequiredArgsConstructor
+public class AttendanceSessionCache {
+
+    private final AttendanceSessionRepository attendanceSessionRepository;
+
+    private final ConcurrentMap<String, AttendanceSessionSnapshot> byCode = new ConcurrentHashMap<>();
+
+    public AttendanceSessionSnapshot getByAttendanceCode(String attendanceCode) {
+        AttendanceSessionSnapshot snapshot = byCode.get(attendanceCode);
+        if (snapshot == null) {
+            snapshot = attendanceSessionRepository.findFirstByAttendanceCodeOrderByIdDesc(attendanceCode)
+                    .map(AttendanceSessionSnapshot::of)
+                    .orElse(null);
+            if (snapshot == null) {
+                return null;
+            }
+            if (snapshot.isLive() && !snapshot.isExpired(LocalDateTime.now())) {
+                // 读库期间可能已有提交后的新快照放入（如 CREATED 读出时已被开始），数据库读出的不覆盖已有条目
+                AttendanceSessionSnapshot existing = byCode.putIfAbsent(attendanceCode, snapshot);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            return snapshot;
+        }
+
+        // 已过结束时间：淘汰，下次访问重新读取数据库中的状态
+        if (snapshot.isExpired(LocalDateTime.now())) {
+            byCode.remove(attendanceCode, snapshot);
+        }
+        return snapshot;
+    }
+
+    // 会话创建或状态变化后更新缓存；快照在调用时取，回滚的事务不会把未提交的状态放进缓存
+    public void put(AttendanceSession session) {
+        if (session.getAttendanceCode() == null) {
+            return;
+        }
+        AttendanceSessionSnapshot snapshot = AttendanceSessionSnapshot.of(session);
+        afterCommit(() -> {
+            if (snapshot.isLive()) {
+                byCode.put(snapshot.getAttendanceCode(), snapshot);
+            } else {
+                byCode.remove(snapshot.getAttendanceCode());
+            }
+        });
+    }
+
+    public int size() {
+        return byCode.size();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+}
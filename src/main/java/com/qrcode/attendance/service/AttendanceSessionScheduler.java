@@ -0,0 +1,205 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// 签到会话生命周期调度：未开始的会话按开始时间、进行中的会话按结束时间放入 DelayQueue，
+// 后台线程取出所有到点的任务后逐个开始或结束，状态变更不再发生在学生的签到请求里。
+// 每个会话单独一个事务，某个会话失败不影响同批的其他会话，失败的任务按退避时间重新入队。
+// 任务只是提醒，执行前会重新读取会话状态和时间，重复或过时的任务直接跳过；
+// 在事务中登记的任务等提交后才入队，回滚的会话不会被调度
+@Component
+@Slf4j
+public class AttendanceSessionScheduler {
+
+    private final AttendanceSessionRepository attendanceSessionRepository;
+    // AttendanceService 开始、结束会话时会回调本类，这里延迟获取避免构造器循环依赖
+    private final ObjectProvider<AttendanceService> attendanceServiceProvider;
+    private final boolean enabled;
+    private final long retryDelayMillis;
+    private final DelayQueue<Task> queue = new DelayQueue<>();
+    private final Thread worker;
+    private volatile boolean running;
+
+    private enum Action {
+        START, END
+    }
+
+    // 重试间隔从 retryDelayMillis 开始逐次翻倍，最长 5 分钟
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private record Task(Long sessionId, Action action, long dueAtMillis, int attempt) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((Task) other).dueAtMillis);
+        }
+    }
+
+    public AttendanceSessionScheduler(AttendanceSessionRepository attendanceSessionRepository,
+                                      ObjectProvider<AttendanceService> attendanceServiceProvider,
+                                      @Value("${app.attendance.scheduler.enabled:true}") boolean enabled,
+                                      @Value("${app.attendance.scheduler.retry-delay-ms:5000}") long retryDelayMillis) {
+        this.attendanceSessionRepository = attendanceSessionRepository;
+        this.attendanceServiceProvider = attendanceServiceProvider;
+        this.enabled = enabled;
+        this.retryDelayMillis = retryDelayMillis;
+        this.worker = new Thread(this::runLoop, "attendance-session-scheduler");
+        this.worker.setDaemon(true);
+    }
+
+    // 启动后装载所有未结束的会话，已经到点的会在第一轮立即处理
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("签到会话自动调度未启用");
+            return;
+        }
+        for (Object[] row : attendanceSessionRepository.findLiveSessionTimes()) {
+            Long id = (Long) row[0];
+            if ("CREATED".equals(row[3])) {
+                add(id, Action.START, (LocalDateTime) row[1]);
+            } else {
+                add(id, Action.END, (LocalDateTime) row[2]);
+            }
+        }
+        running = true;
+        worker.start();
+        log.info("签到会话自动调度已启动 - 待处理: {}", queue.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    // 新建会话到开始时间时自动开始
+    public void scheduleStart(AttendanceSession session) {
+        if ("CREATED".equals(session.getStatus())) {
+            Long sessionId = session.getId();
+            LocalDateTime startTime = session.getStartTime();
+            afterCommit(() -> add(sessionId, Action.START, startTime));
+        }
+    }
+
+    // 进行中的会话到结束时间时自动结束
+    public void scheduleEnd(AttendanceSession session) {
+        if ("STARTED".equals(session.getStatus())) {
+            Long sessionId = session.getId();
+            LocalDateTime endTime = session.getEndTime();
+            afterCommit(() -> add(sessionId, Action.END, endTime));
+        }
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    private void add(Long sessionId, Action action, LocalDateTime dueAt) {
+        if (!enabled || sessionId == null || dueAt == null) {
+            return;
+        }
+        long dueAtMillis = dueAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        queue.offer(new Task(sessionId, action, dueAtMillis, 0));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private void runLoop() {
+        List<Task> due = new ArrayList<>();
+        while (running) {
+            try {
+                due.add(queue.take());
+                // 同一时刻到点的任务一起取出（drainTo 只取出已到期的元素）
+                queue.drainTo(due);
+                process(due);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // 单个会话的失败已在 execute 中处理，这里是整轮失败，全部任务重新入队
+                log.error("签到会话自动调度失败", e);
+                due.forEach(this::retry);
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    private void process(List<Task> due) {
+        // 同一会话同一动作的重复任务只执行一次
+        Map<Long, Task> toStart = new LinkedHashMap<>();
+        Map<Long, Task> toEnd = new LinkedHashMap<>();
+        for (Task task : due) {
+            (task.action() == Action.START ? toStart : toEnd).putIfAbsent(task.sessionId(), task);
+        }
+
+        AttendanceService attendanceService = attendanceServiceProvider.getObject();
+        int started = 0;
+        for (Task task : toStart.values()) {
+            if (execute(task, () -> attendanceService.startDueSession(task.sessionId()))) {
+                started++;
+            }
+        }
+        int ended = 0;
+        for (Task task : toEnd.values()) {
+            if (execute(task, () -> attendanceService.endDueSession(task.sessionId()))) {
+                ended++;
+            }
+        }
+        log.info("签到会话自动调度 - 开始 {} 个，结束 {} 个（到期任务 {} 个）", started, ended, due.size());
+    }
+
+    // 每个会话在自己的事务中执行；失败时按退避时间重新入队，不影响同批其他会话
+    private boolean execute(Task task, BooleanSupplier action) {
+        try {
+            return action.getAsBoolean();
+        } catch (RuntimeException e) {
+            log.error("签到会话自动{}失败 - sessionId: {}, 第 {} 次",
+                    task.action() == Action.START ? "开始" : "结束", task.sessionId(), task.attempt() + 1, e);
+            retry(task);
+            return false;
+        }
+    }
+
+    private void retry(Task task) {
+        long delay = Math.min(retryDelayMillis << Math.min(task.attempt(), 20), MAX_RETRY_DELAY_MILLIS);
+        queue.offer(new Task(task.sessionId(), task.action(), System.currentTimeMillis() + delay, task.attempt() + 1));
+    }
+}
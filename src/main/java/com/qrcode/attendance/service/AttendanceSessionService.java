@@ -1,6 +1,5 @@
 package com.qrcode.attendance.service;
-import com.qrcode.attendance.entity.AttendanceSession;
-import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import com.qrcode.attendance.dto.AttendanceSessionSnapshot;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -8,14 +7,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class AttendanceSessionService {
 
     @Autowired
-    private AttendanceSessionRepository attendanceSessionRepository;
+    private AttendanceSessionCache attendanceSessionCache;
 
-    // 根据签到码查询会话
-    public AttendanceSession getByAttendanceCode(String code) {
+    // 根据签到码查询会话（进行中的会话直接命中缓存）
+    public AttendanceSessionSnapshot getByAttendanceCode(String code) {
         if (code == null || code.isEmpty()) {
             return null;
         }
-        // 调用 Repository 方法查询（JPA 写法）
-        return attendanceSessionRepository.findByAttendanceCode(code).orElse(null);
+        return attendanceSessionCache.getByAttendanceCode(code);
     }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.entity.AttendanceRecord;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.entity.AttendanceSessionSummary;
+import com.qrcode.attendance.entity.TeachingClass;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.repository.AttendanceSessionSummaryRepository;
+import com.qrcode.attendance.repository.TeachingClassStudentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// 签到会话汇总表的维护：创建会话时建行，开始时刷新应到人数，签到由写入队列批量累加，
+// 取消签到时扣减，选课变化时重算该教学班的各会话，结束签到时按签到记录重新校准。
+// 口径与签到统计页一致：应到人数是教学班当前在读人数，出勤、迟到只统计在读学生
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttendanceSessionSummaryService {
+
+    private final AttendanceSessionSummaryRepository attendanceSessionSummaryRepository;
+    private final AttendanceRecordRepository attendanceRecordRepository;
+    private final TeachingClassStudentRepository teachingClassStudentRepository;
+
+    @Transactional
+    public AttendanceSessionSummary create(AttendanceSession session) {
+        AttendanceSessionSummary summary = new AttendanceSessionSummary();
+        summary.setSessionId(session.getId());
+        summary.setRosterSize(countRoster(session));
+        return attendanceSessionSummaryRepository.save(summary);
+    }
+
+    // 签到开始时以当时的在读人数为应到人数
+    @Transactional
+    public void refreshRosterSize(AttendanceSession session) {
+        if (attendanceSessionSummaryRepository.updateRosterSize(session.getId(), countRoster(session)) == 0) {
+            reconcile(session);
+        }
+    }
+
+    // 取消签到：计数减一，被删除的恰好是最早或最晚一条时重新取时间范围；已退课学生的记录本就不在计数中
+    @Transactional
+    public void onCancel(AttendanceRecord record) {
+        Long sessionId = record.getAttendanceSession().getId();
+        LocalDateTime signinTime = record.getSigninTime();
+        if (record.getStudent() == null || !teachingClassStudentRepository.isActiveStudent(
+                record.getAttendanceSession().getTeachingClass().getId(), record.getStudent().getId())) {
+            return;
+        }
+        attendanceSessionSummaryRepository.decrement(sessionId, record.getStatus());
+
+        AttendanceSessionSummary summary = attendanceSessionSummaryRepository.findById(sessionId).orElse(null);
+        if (summary == null || signinTime == null) {
+            return;
+        }
+        if (signinTime.equals(summary.getFirstSigninTime()) || signinTime.equals(summary.getLastSigninTime())) {
+            Object[] range = attendanceRecordRepository.findSigninTimeRangeByAttendanceSessionId(sessionId).get(0);
+            attendanceSessionSummaryRepository.updateSigninTimeRange(
+                    sessionId, (LocalDateTime) range[0], (LocalDateTime) range[1]);
+        }
+    }
+
+    // 选课变化（退课、恢复、新增）：应到人数和在读学生的计数都变了，重算该教学班全部会话的汇总行
+    @Transactional
+    public void onRosterChanged(TeachingClass teachingClass) {
+        List<AttendanceSessionSummary> summaries =
+                attendanceSessionSummaryRepository.findByTeachingClassId(teachingClass.getId());
+        if (summaries.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Object[]> rows = new HashMap<>(summaries.size() * 4 / 3 + 1);
+        for (Object[] row : attendanceRecordRepository.summarizeByTeachingClassId(teachingClass.getId())) {
+            rows.put((Long) row[0], Arrays.copyOfRange(row, 1, row.length));
+        }
+        int rosterSize = (int) teachingClassStudentRepository.countActiveStudentsByTeachingClass(teachingClass);
+        for (AttendanceSessionSummary summary : summaries) {
+            apply(summary, rosterSize, rows.getOrDefault(summary.getSessionId(), new Object[4]));
+        }
+        attendanceSessionSummaryRepository.saveAll(summaries);
+    }
+
+    // 按签到记录重新计算整行（结束签到时调用，也用于补齐缺失的汇总行）
+    @Transactional
+    public AttendanceSessionSummary reconcile(AttendanceSession session) {
+        AttendanceSessionSummary summary = attendanceSessionSummaryRepository.findById(session.getId())
+                .orElseGet(AttendanceSessionSummary::new);
+        int presentCount = summary.getPresentCount();
+        int lateCount = summary.getLateCount();
+        summarize(session, summary);
+        if (summary.getSessionId() != null
+                && (summary.getPresentCount() != presentCount || summary.getLateCount() != lateCount)) {
+            log.warn("签到汇总与签到记录不一致，已校准 - sessionId: {}, 出勤: {} -> {}, 迟到: {} -> {}",
+                    session.getId(), presentCount, summary.getPresentCount(), lateCount, summary.getLateCount());
+        }
+
+        summary.setSessionId(session.getId());
+        return attendanceSessionSummaryRepository.save(summary);
+    }
+
+    // 启动时为早于汇总表创建的会话补齐汇总行，此时没有正在写入的签到
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        List<AttendanceSession> sessions = attendanceSessionSummaryRepository.findSessionsWithoutSummary();
+        for (AttendanceSession session : sessions) {
+            reconcile(session);
+        }
+        if (!sessions.isEmpty()) {
+            log.info("补齐签到会话汇总 {} 条", sessions.size());
+        }
+    }
+
+    // 会话ID -> 汇总行，一条 IN 查询。只读：万一缺行，按签到记录临时计算一份，不在列表页写库也不等待写入队列
+    @Transactional(readOnly = true)
+    public Map<Long, AttendanceSessionSummary> getSummaries(Collection<AttendanceSession> sessions) {
+        if (sessions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> sessionIds = sessions.stream().map(AttendanceSession::getId).toList();
+        Map<Long, AttendanceSessionSummary> summaries = new HashMap<>(sessionIds.size() * 4 / 3 + 1);
+        for (AttendanceSessionSummary summary : attendanceSessionSummaryRepository.findBySessionIdIn(sessionIds)) {
+            summaries.put(summary.getSessionId(), summary);
+        }
+
+        for (AttendanceSession session : sessions) {
+            if (summaries.containsKey(session.getId())) {
+                continue;
+            }
+            AttendanceSessionSummary summary = new AttendanceSessionSummary();
+            summary.setSessionId(session.getId());
+            summaries.put(session.getId(), summarize(session, summary));
+        }
+        return summaries;
+    }
+
+    private AttendanceSessionSummary summarize(AttendanceSession session, AttendanceSessionSummary summary) {
+        Object[] row = attendanceRecordRepository.summarizeByAttendanceSessionId(session.getId()).get(0);
+        apply(summary, countRoster(session), row);
+        return summary;
+    }
+
+    // row: (出勤数, 迟到数, 最早签到时间, 最晚签到时间)，没有记录时各项为 null
+    private static void apply(AttendanceSessionSummary summary, int rosterSize, Object[] row) {
+        summary.setRosterSize(rosterSize);
+        summary.setPresentCount(row[0] == null ? 0 : ((Number) row[0]).intValue());
+        summary.setLateCount(row[1] == null ? 0 : ((Number) row[1]).intValue());
+        summary.setFirstSigninTime((LocalDateTime) row[2]);
+        summary.setLastSigninTime((LocalDateTime) row[3]);
+    }
+
+    private int countRoster(AttendanceSession session) {
+        return (int) teachingClassStudentRepository.countActiveStudentsByTeachingClass(session.getTeachingClass());
+    }
+}
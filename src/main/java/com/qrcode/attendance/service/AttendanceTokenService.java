@@ -0,0 +1,144 @@
+package com.qrcode.attendance.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+// 二维码轮换令牌：token = HMAC-SHA256(会话ID:时间片)，每 rotate-seconds 秒换一次，扫码打开签到页时校验。
+// 校验通过后签发表单令牌 = 过期时间.HMAC-SHA256(form:会话ID:过期时间)，提交签到时校验，
+// 学生输入学号的时间不受二维码轮换周期限制。两种令牌都只重新计算 HMAC，不查库也不落库
+@Service
+@Slf4j
+public class AttendanceTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int TOKEN_LENGTH = 16;
+
+    @Value("${app.attendance.token.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.attendance.token.rotate-seconds:30}")
+    private long rotateSeconds;
+
+    @Value("${app.attendance.token.form-ttl-seconds:300}")
+    private long formTtlSeconds;
+
+    @Value("${app.attendance.token.secret:}")
+    private String secret;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.isEmpty()) {
+            if (enabled) {
+                // 随机密钥会让每次重启后投影中的二维码全部失效，多实例之间也无法互相校验
+                throw new IllegalStateException("已启用签到令牌（app.attendance.token.enabled=true），"
+                        + "必须配置 app.attendance.token.secret");
+            }
+            return;
+        }
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化签到令牌失败", e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRotateSeconds() {
+        return rotateSeconds;
+    }
+
+    // 当前时间片的令牌，未启用时返回 null
+    public String issue(Long sessionId) {
+        if (!enabled) {
+            return null;
+        }
+        return sign(sessionId, currentSlot());
+    }
+
+    // 接受当前和上一个时间片的令牌，给扫码到打开页面留出余量
+    public boolean validate(Long sessionId, String token) {
+        if (!enabled) {
+            return true;
+        }
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        long slot = currentSlot();
+        byte[] actual = token.getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(actual, sign(sessionId, slot).getBytes(StandardCharsets.US_ASCII))
+                || MessageDigest.isEqual(actual, sign(sessionId, slot - 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // 扫码校验通过后签发的表单令牌，未启用时返回 null
+    public String issueFormToken(Long sessionId) {
+        if (!enabled) {
+            return null;
+        }
+        long expiresAt = Instant.now().getEpochSecond() + formTtlSeconds;
+        return expiresAt + "." + signForm(sessionId, expiresAt);
+    }
+
+    // 表单令牌未过期且签名匹配
+    public boolean validateFormToken(Long sessionId, String formToken) {
+        if (!enabled) {
+            return true;
+        }
+        if (formToken == null) {
+            return false;
+        }
+        int dot = formToken.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(formToken.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expiresAt < Instant.now().getEpochSecond()) {
+            return false;
+        }
+        return MessageDigest.isEqual(formToken.substring(dot + 1).getBytes(StandardCharsets.US_ASCII),
+                signForm(sessionId, expiresAt).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private long currentSlot() {
+        return Instant.now().getEpochSecond() / rotateSeconds;
+    }
+
+    private String sign(Long sessionId, long slot) {
+        return hmac(sessionId + ":" + slot);
+    }
+
+    private String signForm(Long sessionId, long expiresAt) {
+        return hmac("form:" + sessionId + ":" + expiresAt);
+    }
+
+    private String hmac(String message) {
+        byte[] digest = macs.get().doFinal(message.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, TOKEN_LENGTH);
+    }
+}
@@ -0,0 +1,148 @@
+package com.qrcode.attendance.service;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// 二维码专用渲染器：直接把 BitMatrix 按行打包成 1 位灰度 PNG（或 SVG），
+// 不经过 BufferedImage / Graphics2D / ImageIO。扫描线和压缩缓冲区按线程复用，
+// 每次调用只分配 Deflater（用完立即 end() 释放本地内存）、一个 CRC32 和输出数组
+final class QRCodeRenderer {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+    private static final int IHDR_LENGTH = 13;
+    // 每个块：4 字节长度 + 4 字节类型 + 数据 + 4 字节 CRC
+    private static final int CHUNK_OVERHEAD = 12;
+
+    private static final ThreadLocal<byte[]> SCANLINE_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<byte[]> COMPRESS_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private QRCodeRenderer() {
+    }
+
+    static byte[] toPng(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int stride = (width + 7) / 8;
+        int rawLength = height * (stride + 1);
+
+        byte[] raw = SCANLINE_BUFFER.get();
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+            SCANLINE_BUFFER.set(raw);
+        }
+
+        // 每行：1 字节过滤类型(0) + 打包像素，1 = 白色，0 = 黑色（深色模块）
+        int offset = 0;
+        for (int y = 0; y < height; y++) {
+            raw[offset++] = 0;
+            for (int i = 0; i < stride; i++) {
+                raw[offset + i] = (byte) 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                if (matrix.get(x, y)) {
+                    raw[offset + (x >> 3)] &= (byte) ~(0x80 >>> (x & 7));
+                }
+            }
+            offset += stride;
+        }
+
+        byte[] compressed = COMPRESS_BUFFER.get();
+        int compressedLength = 0;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    COMPRESS_BUFFER.set(compressed);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        // 各块长度都已确定，直接写入最终数组
+        byte[] png = new byte[PNG_SIGNATURE.length + CHUNK_OVERHEAD * 3 + IHDR_LENGTH + compressedLength];
+        System.arraycopy(PNG_SIGNATURE, 0, png, 0, PNG_SIGNATURE.length);
+        CRC32 crc = new CRC32();
+
+        int pos = startChunk(png, PNG_SIGNATURE.length, IHDR, IHDR_LENGTH);
+        putInt(png, pos, width);
+        putInt(png, pos + 4, height);
+        png[pos + 8] = 1;  // 位深 1
+        png[pos + 9] = 0;  // 灰度
+        png[pos + 10] = 0; // deflate 压缩
+        png[pos + 11] = 0; // 标准过滤
+        png[pos + 12] = 0; // 不隔行
+        pos = endChunk(png, pos, IHDR_LENGTH, crc);
+
+        pos = startChunk(png, pos, IDAT, compressedLength);
+        System.arraycopy(compressed, 0, png, pos, compressedLength);
+        pos = endChunk(png, pos, compressedLength, crc);
+
+        pos = startChunk(png, pos, IEND, 0);
+        endChunk(png, pos, 0, crc);
+        return png;
+    }
+
+    // 以模块为单位的矩阵（encode 时宽高传 0）输出 SVG，每行连续的深色模块合并成一段路径
+    static byte[] toSvg(BitMatrix matrix, int size) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+
+        StringBuilder path = new StringBuilder(width * height / 2);
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && matrix.get(x, y)) {
+                    x++;
+                }
+                int run = x - start;
+                path.append('M').append(start).append(' ').append(y)
+                        .append('h').append(run).append("v1h-").append(run).append('z');
+            }
+        }
+
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 " + width + " " + height
+                + "\" width=\"" + size + "\" height=\"" + size + "\" shape-rendering=\"crispEdges\">"
+                + "<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>"
+                + "<path fill=\"#000\" d=\"" + path + "\"/></svg>";
+        return svg.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 写入块长度和类型，返回数据起始位置
+    private static int startChunk(byte[] png, int pos, byte[] type, int length) {
+        putInt(png, pos, length);
+        System.arraycopy(type, 0, png, pos + 4, 4);
+        return pos + 8;
+    }
+
+    // 数据写完后追加 CRC（覆盖类型和数据），返回下一个块的起始位置
+    private static int endChunk(byte[] png, int dataPos, int length, CRC32 crc) {
+        crc.reset();
+        crc.update(png, dataPos - 4, length + 4);
+        putInt(png, dataPos + length, (int) crc.getValue());
+        return dataPos + length + 4;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
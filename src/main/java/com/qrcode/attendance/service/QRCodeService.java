@@ -2,61 +2,140 @@ package com.qrcode.attendance.service;
 import com.google.zxing.*;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import javax.imageio.ImageIO;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class QRCodeService {
 
     private static final Logger log = LoggerFactory.getLogger(QRCodeService.class);
 
-    public String generateAttendanceQRCode(String attendanceCode, String baseUrl) {
-        try {
-            String qrContent = baseUrl + "/attendance/signin?code=" + attendanceCode;
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(qrContent, BarcodeFormat.QR_CODE, 300, 300);
-
-            // 手动将BitMatrix转为BufferedImage（不依赖MatrixToImageWriter）
-            int width = bitMatrix.getWidth();
-            int height = bitMatrix.getHeight();
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D graphics = (Graphics2D) image.getGraphics();
-
-            // 设置背景色（白色）
-            graphics.setColor(Color.WHITE);
-            graphics.fillRect(0, 0, width, height);
-            // 设置二维码颜色（黑色）
-            graphics.setColor(Color.BLACK);
-
-            // 逐像素绘制二维码
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    if (bitMatrix.get(x, y)) {
-                        graphics.fillRect(x, y, 1, 1);
-                    }
+    // 图片缓存上限（按 格式+二维码内容+尺寸 缓存，LRU 淘汰）
+    private static final int MAX_CACHED_IMAGES = 256;
+
+    private final Map<String, byte[]> imageCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > MAX_CACHED_IMAGES;
                 }
-            }
-            graphics.dispose();
+            });
+
+    private final MeterRegistry meterRegistry;
+
+    public QRCodeService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public String buildSigninUrl(String attendanceCode, String baseUrl) {
+        return buildSigninUrl(attendanceCode, null, baseUrl);
+    }
+
+    // 带轮换令牌的签到链接，令牌为空时退化为只有签到码
+    public String buildSigninUrl(String attendanceCode, String token, String baseUrl) {
+        String url = baseUrl + "/attendance/signin?code=" + attendanceCode;
+        return token == null ? url : url + "&t=" + token;
+    }
 
-            // 转换为Base64
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, "PNG", outputStream);
-            byte[] imageBytes = outputStream.toByteArray();
-            String base64 = Base64.getEncoder().encodeToString(imageBytes);
+    // 图片的 ETag 只取决于格式、二维码内容和尺寸，无需生成图片即可计算
+    public String getETag(String attendanceCode, String token, String baseUrl, int size, String format) {
+        String key = cacheKey(format, buildSigninUrl(attendanceCode, token, baseUrl), size);
+        return "\"" + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
 
-            log.info("二维码Base64生成成功，长度：{}", base64.length());
-            return base64;
+    // 生成二维码 PNG 原始字节，相同内容和尺寸直接命中缓存
+    public byte[] generateAttendanceQRCodePng(String attendanceCode, String token, String baseUrl, int size) {
+        String qrContent = buildSigninUrl(attendanceCode, token, baseUrl);
+        String key = cacheKey("png", qrContent, size);
 
+        byte[] cached = imageCache.get(key);
+        if (cached != null) {
+            cacheCounter("png", "hit");
+            return cached;
+        }
+        cacheCounter("png", "miss");
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            byte[] png = renderPng(qrContent, size);
+            imageCache.put(key, png);
+            log.debug("二维码PNG生成成功 - 签到码: {}, 尺寸: {}, 字节数: {}", attendanceCode, size, png.length);
+            return png;
         } catch (Exception e) {
             log.error("生成二维码失败", e);
             return null;
+        } finally {
+            sample.stop(renderTimer("png"));
+        }
+    }
+
+    public String generateAttendanceQRCode(String attendanceCode, String baseUrl) {
+        byte[] imageBytes = generateAttendanceQRCodePng(attendanceCode, null, baseUrl, 300);
+        if (imageBytes == null) {
+            return null;
+        }
+        // 转换为Base64
+        String base64 = Base64.getEncoder().encodeToString(imageBytes);
+        log.debug("二维码Base64生成成功，长度：{}", base64.length());
+        return base64;
+    }
+
+    public byte[] generateAttendanceQRCodeSvg(String attendanceCode, String token, String baseUrl, int size) {
+        String qrContent = buildSigninUrl(attendanceCode, token, baseUrl);
+        String key = cacheKey("svg", qrContent, size);
+
+        byte[] cached = imageCache.get(key);
+        if (cached != null) {
+            cacheCounter("svg", "hit");
+            return cached;
+        }
+        cacheCounter("svg", "miss");
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // 宽高传 0 得到以模块为单位的矩阵，由 SVG 的 viewBox 负责缩放
+            BitMatrix bitMatrix = new QRCodeWriter().encode(qrContent, BarcodeFormat.QR_CODE, 0, 0);
+            byte[] svg = QRCodeRenderer.toSvg(bitMatrix, size);
+            imageCache.put(key, svg);
+            return svg;
+        } catch (Exception e) {
+            log.error("生成二维码SVG失败", e);
+            return null;
+        } finally {
+            sample.stop(renderTimer("svg"));
         }
     }
-}
\ No newline at end of file
+
+    // 只有缓存未命中才会真正编码，计时只覆盖编码和渲染
+    private Timer renderTimer(String format) {
+        return Timer.builder("attendance.qrcode.render")
+                .description("二维码编码与渲染耗时")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void cacheCounter(String format, String result) {
+        meterRegistry.counter("attendance.qrcode.cache", "format", format, "result", result).increment();
+    }
+
+    private byte[] renderPng(String qrContent, int size) throws WriterException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(qrContent, BarcodeFormat.QR_CODE, size, size);
+        // 直接从 BitMatrix 编码 1 位灰度 PNG
+        return QRCodeRenderer.toPng(bitMatrix);
+    }
+
+    private String cacheKey(String format, String qrContent, int size) {
+        return format + "|" + size + "|" + qrContent;
+    }
+}
@@ -0,0 +1,63 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.repository.TeachingClassStudentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// 教学班在读人数缓存：按教师缓存 教学班ID -> 人数，首次访问时一条 GROUP BY 加载该教师全部教学班。
+// 选课、退课后淘汰该教师的缓存（在事务中调用时等提交后再生效），下次访问重新加载。
+// 不做增量加减：提交前开始的加载可能已经读到或没读到这次变化，增量会重复计数；
+// 淘汰在提交后执行，并且会等同一教师正在进行的加载（computeIfAbsent）结束后才移除
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RosterCountCache {
+
+    private final TeachingClassStudentRepository teachingClassStudentRepository;
+
+    // 教师ID -> (教学班ID -> 在读人数)，没有学生的教学班不在表中
+    private final ConcurrentMap<Long, ConcurrentMap<Long, Integer>> countsByTeacher = new ConcurrentHashMap<>();
+
+    public Map<Long, Integer> getCounts(Long teacherId) {
+        return Collections.unmodifiableMap(countsByTeacher.computeIfAbsent(teacherId, this::load));
+    }
+
+    public int getCount(Long teacherId, Long teachingClassId) {
+        return getCounts(teacherId).getOrDefault(teachingClassId, 0);
+    }
+
+    public void evict(Long teacherId) {
+        afterCommit(() -> countsByTeacher.remove(teacherId));
+    }
+
+    private ConcurrentMap<Long, Integer> load(Long teacherId) {
+        ConcurrentMap<Long, Integer> counts = new ConcurrentHashMap<>();
+        for (Object[] row : teachingClassStudentRepository.countActiveStudentsGroupByTeachingClass(teacherId)) {
+            counts.put((Long) row[0], ((Long) row[1]).intValue());
+        }
+        log.debug("加载教学班人数 - teacherId: {}, 教学班数: {}", teacherId, counts.size());
+        return counts;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+}
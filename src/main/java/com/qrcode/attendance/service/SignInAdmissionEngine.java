@@ -0,0 +1,193 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.RosterKey;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.repository.TeachingClassStudentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+// 签到准入引擎：按签到会话缓存教学班花名册（学号 -> 花名册位置）和"已签到"位图，
+// 签到时的"是否在班"和"是否重复签到"检查都在内存中完成，数据库只承担最终的写入。
+// 结束签到时留下关闭标记：结束事务提交、会话缓存更新之前到达的签到仍看到 STARTED，
+// 由标记拒绝，而不是按需重新加载一份再也不会被释放的花名册
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SignInAdmissionEngine {
+
+    private final TeachingClassStudentRepository teachingClassStudentRepository;
+    private final AttendanceRecordRepository attendanceRecordRepository;
+    private final AttendanceRecordWriteBehind attendanceRecordWriteBehind;
+
+    // 关闭标记保留的时间，远大于结束事务提交到会话缓存更新的间隔
+    private static final long CLOSED_MARK_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // 签到会话ID -> 花名册
+    private final ConcurrentMap<Long, SessionRoster> rosters = new ConcurrentHashMap<>();
+    // 已结束的签到会话ID -> 关闭时间
+    private final ConcurrentMap<Long, Long> closed = new ConcurrentHashMap<>();
+
+    public enum Result {
+        ACCEPTED,       // 准入，可以写入签到记录
+        NOT_ENROLLED,   // 不在教学班花名册中
+        ALREADY_SIGNED, // 已经签到过
+        CLOSED          // 签到已结束
+    }
+
+    public record Admission(Result result, Long studentPk) {
+    }
+
+    // 签到开始时加载花名册
+    public void open(Long sessionId, Long teachingClassId) {
+        closed.remove(sessionId);
+        rosters.put(sessionId, load(sessionId, teachingClassId));
+    }
+
+    // 签到结束：先留关闭标记再释放花名册，之后的准入一律拒绝；结束事务回滚时撤销标记
+    public void close(Long sessionId) {
+        long now = System.currentTimeMillis();
+        closed.values().removeIf(closedAt -> closedAt < now - CLOSED_MARK_MILLIS);
+        closed.put(sessionId, now);
+        rosters.remove(sessionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        closed.remove(sessionId);
+                    }
+                }
+            });
+        }
+    }
+
+    // 教学班学生变动后丢弃相关花名册，下次签到时重新加载（在事务中调用时等提交后再丢弃）
+    public void evictTeachingClass(Long teachingClassId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rosters.values().removeIf(roster -> roster.teachingClassId.equals(teachingClassId));
+                }
+            });
+            return;
+        }
+        rosters.values().removeIf(roster -> roster.teachingClassId.equals(teachingClassId));
+    }
+
+    // 已加载花名册的会话数
+    public int openSessionCount() {
+        return rosters.size();
+    }
+
+    public Admission admit(Long sessionId, Long teachingClassId, String studentNumber) {
+        if (closed.containsKey(sessionId)) {
+            return new Admission(Result.CLOSED, null);
+        }
+        // 应用重启或花名册被丢弃后按需加载
+        SessionRoster roster = rosters.computeIfAbsent(sessionId, id -> load(id, teachingClassId));
+
+        Integer position = roster.positions.get(studentNumber);
+        if (position == null) {
+            return new Admission(Result.NOT_ENROLLED, null);
+        }
+
+        Long studentPk = roster.studentPks[position];
+        boolean marked = roster.tryMarkSigned(position);
+        // 加载期间会话被关闭：丢弃刚加载的花名册。close 先留标记再移除花名册，这里看不到标记说明准入发生在关闭之前
+        if (closed.containsKey(sessionId)) {
+            rosters.remove(sessionId, roster);
+            return new Admission(Result.CLOSED, null);
+        }
+        if (!marked) {
+            return new Admission(Result.ALREADY_SIGNED, studentPk);
+        }
+        return new Admission(Result.ACCEPTED, studentPk);
+    }
+
+    // 写入失败或教师取消签到后，归还该学生的签到位
+    public void release(Long sessionId, Long studentPk) {
+        SessionRoster roster = rosters.get(sessionId);
+        if (roster != null) {
+            roster.clearSigned(studentPk);
+        }
+    }
+
+    private SessionRoster load(Long sessionId, Long teachingClassId) {
+        List<RosterKey> rows = teachingClassStudentRepository.findActiveRosterKeysByTeachingClassId(teachingClassId);
+        SessionRoster roster = new SessionRoster(teachingClassId, rows);
+
+        // 恢复签到状态：已落库的 + 正在写入的。先取写入中的再查库——记录提交后才移出写入中，两次读取之间不会漏掉
+        List<Long> inFlight = attendanceRecordWriteBehind.findInFlightStudentPks(sessionId);
+        for (Long studentPk : attendanceRecordRepository.findStudentIdsByAttendanceSessionId(sessionId)) {
+            roster.markSigned(studentPk);
+        }
+        inFlight.forEach(roster::markSigned);
+
+        log.debug("加载签到花名册 - sessionId: {}, 学生数: {}", sessionId, rows.size());
+        return roster;
+    }
+
+    private static final class SessionRoster {
+        private final Long teachingClassId;
+        private final Map<String, Integer> positions;
+        private final long[] studentPks;
+        private final BitSet signed;
+
+        SessionRoster(Long teachingClassId, List<RosterKey> rows) {
+            this.teachingClassId = teachingClassId;
+            this.positions = new HashMap<>(rows.size() * 4 / 3 + 1);
+            this.studentPks = new long[rows.size()];
+            this.signed = new BitSet(rows.size());
+
+            for (int i = 0; i < rows.size(); i++) {
+                RosterKey row = rows.get(i);
+                studentPks[i] = row.studentPk();
+                positions.put(row.studentId(), i);
+            }
+        }
+
+        // 返回 false 表示该位置已被占用（重复签到）
+        synchronized boolean tryMarkSigned(int position) {
+            if (signed.get(position)) {
+                return false;
+            }
+            signed.set(position);
+            return true;
+        }
+
+        synchronized void markSigned(Long studentPk) {
+            int position = indexOf(studentPk);
+            if (position >= 0) {
+                signed.set(position);
+            }
+        }
+
+        synchronized void clearSigned(Long studentPk) {
+            int position = indexOf(studentPk);
+            if (position >= 0) {
+                signed.clear(position);
+            }
+        }
+
+        private int indexOf(Long studentPk) {
+            for (int i = 0; i < studentPks.length; i++) {
+                if (studentPks[i] == studentPk) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.qrcode.attendance.service;
+
+// 签到被拒绝：message 给学生看，reason 用作监控指标的标签
+public class SignInRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+
+    public SignInRejectedException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
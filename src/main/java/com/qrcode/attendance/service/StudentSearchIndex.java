@@ -0,0 +1,284 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.entity.Student;
+import com.qrcode.attendance.repository.StudentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 学生搜索索引：对 姓名、学号、行政班级 建单字 + 二元组（bigram）倒排索引，每个 gram 对应一个文档位图。
+// 查询时对关键词的所有 bigram 求交集，再用原文做一次 contains 校验去掉跨字段的误命中；
+// 中文姓名按字切分即可，不依赖分词。排除已在教学班的学生按文档号逐个清除候选位。
+// 结果按文档号排序：启动时按学号分配，修改学生时原位更新，新增的排在后面；
+// 删除留下的空文档号超过一定数量时压缩重排，文档号总数不会无限增长
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StudentSearchIndex {
+
+    // 字段分隔符，保证关键词不会跨字段匹配
+    private static final char FIELD_SEPARATOR = '\u0000';
+    // 已删除的文档号超过这个数且多于存活文档时压缩
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final StudentRepository studentRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // gram -> 文档位图
+    private final Map<String, BitSet> postings = new HashMap<>();
+    // 文档号 -> 学生主键 / 检索文本，文档号按建索引顺序分配，删除后留空直到压缩
+    private List<Long> studentPks = new ArrayList<>();
+    private List<String> texts = new ArrayList<>();
+    // 学生主键 -> 文档号
+    private final Map<Long, Integer> docIds = new HashMap<>();
+    private BitSet live = new BitSet();
+
+    @PostConstruct
+    public void init() {
+        List<Object[]> rows = studentRepository.findSearchKeys();
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                put((Long) row[0], searchText((String) row[1], (String) row[2], (String) row[3]));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("学生搜索索引构建完成，学生数: {}, gram 数: {}", rows.size(), postings.size());
+    }
+
+    // 学生新增或修改后调用（在事务中调用时等提交后再生效）；修改时保留原文档号，排序位置不变
+    public void index(Student student) {
+        Long studentPk = student.getId();
+        String text = searchText(student.getStudentId(), student.getName(), student.getClassName());
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Integer docId = docIds.get(studentPk);
+                if (docId == null) {
+                    put(studentPk, text);
+                } else {
+                    replace(docId, text);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // 学生删除后调用（在事务中调用时等提交后再生效）
+    public void remove(Long studentPk) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeDoc(studentPk);
+                if (studentPks.size() - docIds.size() > Math.max(COMPACT_THRESHOLD, docIds.size())) {
+                    compact();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // 按关键词搜索并排除 excludedStudentPks，返回一页学生主键；关键词为空时返回全部
+    public Page<Long> search(String keyword, Collection<Long> excludedStudentPks, Pageable pageable) {
+        String query = keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+
+        lock.readLock().lock();
+        try {
+            BitSet matches = candidates(query);
+            for (Long studentPk : excludedStudentPks) {
+                Integer docId = docIds.get(studentPk);
+                if (docId != null) {
+                    matches.clear(docId);
+                }
+            }
+
+            // 校验候选并按顺序截取当前页，总数是全部校验通过的文档数
+            List<Long> content = new ArrayList<>(pageable.getPageSize());
+            long offset = pageable.getOffset();
+            long total = 0;
+            for (int docId = matches.nextSetBit(0); docId >= 0; docId = matches.nextSetBit(docId + 1)) {
+                if (query.length() > 1 && !texts.get(docId).contains(query)) {
+                    continue;
+                }
+                if (total >= offset && content.size() < pageable.getPageSize()) {
+                    content.add(studentPks.get(docId));
+                }
+                total++;
+            }
+            return new PageImpl<>(content, pageable, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 已分配的文档号总数（含已删除留空的）
+    int docCapacity() {
+        lock.readLock().lock();
+        try {
+            return studentPks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 返回的位图是副本，调用方可以修改
+    private BitSet candidates(String query) {
+        if (query.isEmpty()) {
+            return (BitSet) live.clone();
+        }
+        if (query.length() == 1) {
+            BitSet posting = postings.get(query);
+            return posting == null ? new BitSet() : (BitSet) posting.clone();
+        }
+
+        BitSet result = null;
+        for (String gram : bigrams(query)) {
+            BitSet posting = postings.get(gram);
+            if (posting == null) {
+                return new BitSet();
+            }
+            if (result == null) {
+                result = (BitSet) posting.clone();
+            } else {
+                result.and(posting);
+            }
+        }
+        return result;
+    }
+
+    private void put(Long studentPk, String text) {
+        int docId = studentPks.size();
+        studentPks.add(studentPk);
+        texts.add(text);
+        docIds.put(studentPk, docId);
+        live.set(docId);
+        for (String gram : grams(text)) {
+            postings.computeIfAbsent(gram, g -> new BitSet()).set(docId);
+        }
+    }
+
+    // 原位替换文档内容：只改动新旧 gram 的差集
+    private void replace(int docId, String text) {
+        Set<String> oldGrams = grams(texts.get(docId));
+        Set<String> newGrams = grams(text);
+        for (String gram : oldGrams) {
+            if (!newGrams.contains(gram)) {
+                clearPosting(gram, docId);
+            }
+        }
+        for (String gram : newGrams) {
+            if (!oldGrams.contains(gram)) {
+                postings.computeIfAbsent(gram, g -> new BitSet()).set(docId);
+            }
+        }
+        texts.set(docId, text);
+    }
+
+    private void removeDoc(Long studentPk) {
+        Integer docId = docIds.remove(studentPk);
+        if (docId == null) {
+            return;
+        }
+        live.clear(docId);
+        for (String gram : grams(texts.get(docId))) {
+            clearPosting(gram, docId);
+        }
+        studentPks.set(docId, null);
+        texts.set(docId, "");
+    }
+
+    private void clearPosting(String gram, int docId) {
+        BitSet posting = postings.get(gram);
+        if (posting != null) {
+            posting.clear(docId);
+            if (posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    // 去掉已删除的文档号，存活文档保持原有相对顺序重新编号
+    private void compact() {
+        List<Long> oldPks = studentPks;
+        List<String> oldTexts = texts;
+        BitSet oldLive = live;
+        studentPks = new ArrayList<>(docIds.size());
+        texts = new ArrayList<>(docIds.size());
+        live = new BitSet(docIds.size());
+        docIds.clear();
+        postings.clear();
+        for (int docId = oldLive.nextSetBit(0); docId >= 0; docId = oldLive.nextSetBit(docId + 1)) {
+            put(oldPks.get(docId), oldTexts.get(docId));
+        }
+        log.debug("学生搜索索引压缩完成，文档数: {}", studentPks.size());
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    // 每个字段的单字和相邻二元组，不跨越字段分隔符
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == FIELD_SEPARATOR) {
+                continue;
+            }
+            grams.add(String.valueOf(c));
+            if (i + 1 < text.length() && text.charAt(i + 1) != FIELD_SEPARATOR) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    private static Set<String> bigrams(String query) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < query.length(); i++) {
+            grams.add(query.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static String searchText(String studentId, String name, String className) {
+        return (nullToEmpty(studentId) + FIELD_SEPARATOR + nullToEmpty(name) + FIELD_SEPARATOR + nullToEmpty(className))
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -1,13 +1,22 @@
 package com.qrcode.attendance.service;
 
+import com.qrcode.attendance.dto.BulkEnrollmentReport;
+import com.qrcode.attendance.dto.RosterKey;
+import com.qrcode.attendance.dto.StudentSummary;
 import com.qrcode.attendance.entity.*;
 import com.qrcode.attendance.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +27,18 @@ public class TeachingClassService {
     private final TeachingClassRepository teachingClassRepository;
     private final TeachingClassStudentRepository teachingClassStudentRepository;
     private final StudentRepository studentRepository;
+    private final TeachingClassRosterEntryRepository teachingClassRosterEntryRepository;
+    private final SignInAdmissionEngine signInAdmissionEngine;
+    private final StudentSearchIndex studentSearchIndex;
+    private final RosterCountCache rosterCountCache;
+    private final AttendanceSessionSummaryService attendanceSessionSummaryService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final int IN_CLAUSE_CHUNK = 1000;
+    private static final String INSERT_ENROLLMENT_SQL =
+            "INSERT INTO teaching_class_students (teaching_class_id, student_id, join_time, status) VALUES (?, ?, ?, 'ACTIVE')";
+    private static final String REACTIVATE_ENROLLMENT_SQL =
+            "UPDATE teaching_class_students SET status = 'ACTIVE' WHERE id = ?";
 
     @Transactional
     public TeachingClass createTeachingClass(TeachingClass teachingClass) {
@@ -62,14 +83,16 @@ public class TeachingClassService {
         }
 
         teachingClassRepository.delete(teachingClass);
+        rosterCountCache.evict(teachingClass.getTeacher().getId());
     }
 
     public List<TeachingClass> getTeachingClassesByTeacher(Teacher teacher) {
         return teachingClassRepository.findByTeacherAndIsActiveTrue(teacher);
     }
 
-    public List<Student> getStudentsInTeachingClass(TeachingClass teachingClass) {
-        return teachingClassStudentRepository.findActiveStudentsByTeachingClass(teachingClass);
+    // 在读学生花名册（只读视图，一条查询带出院系名称），按学号排序
+    public List<TeachingClassRosterEntry> getStudentsInTeachingClass(TeachingClass teachingClass) {
+        return teachingClassRosterEntryRepository.findByTeachingClassIdAndStatusOrderByStudentId(teachingClass.getId(), "ACTIVE");
     }
 
     @Transactional
@@ -91,6 +114,9 @@ public class TeachingClassService {
             } else {
                 tcs.setStatus("ACTIVE");
                 teachingClassStudentRepository.save(tcs);
+                signInAdmissionEngine.evictTeachingClass(teachingClassId);
+                rosterCountCache.evict(teachingClass.getTeacher().getId());
+                attendanceSessionSummaryService.onRosterChanged(teachingClass);
                 return;
             }
         }
@@ -102,6 +128,114 @@ public class TeachingClassService {
         tcs.setStatus("ACTIVE");
 
         teachingClassStudentRepository.save(tcs);
+        // 花名册已变化，进行中的签到需要重新加载，签到汇总按新的花名册重算
+        signInAdmissionEngine.evictTeachingClass(teachingClassId);
+        rosterCountCache.evict(teachingClass.getTeacher().getId());
+        attendanceSessionSummaryService.onRosterChanged(teachingClass);
+    }
+
+    // 批量选课：学号按 IN 查询一次性解析，和现有选课记录在内存中比对，
+    // 新增和恢复选课各用一次 JDBC 批处理，全部在同一个事务中完成
+    @Transactional
+    public BulkEnrollmentReport bulkEnroll(Long teachingClassId, List<String> studentNumbers) {
+        TeachingClass teachingClass = teachingClassRepository.findById(teachingClassId)
+                .orElseThrow(() -> new RuntimeException("教学班不存在"));
+
+        // 学号 -> 学生主键
+        Set<String> distinctNumbers = new LinkedHashSet<>(studentNumbers);
+        Map<String, Long> studentPks = new HashMap<>(distinctNumbers.size() * 4 / 3 + 1);
+        List<String> pending = new ArrayList<>(distinctNumbers);
+        for (int from = 0; from < pending.size(); from += IN_CLAUSE_CHUNK) {
+            List<String> chunk = pending.subList(from, Math.min(from + IN_CLAUSE_CHUNK, pending.size()));
+            for (Object[] row : studentRepository.findKeysByStudentIdIn(chunk)) {
+                studentPks.put((String) row[1], (Long) row[0]);
+            }
+        }
+
+        // 学生主键 -> (选课记录ID, 状态)
+        Map<Long, Object[]> enrollments = new HashMap<>();
+        for (Object[] row : teachingClassStudentRepository.findEnrollmentKeysByTeachingClassId(teachingClassId)) {
+            enrollments.put((Long) row[1], row);
+        }
+
+        List<BulkEnrollmentReport.Row> rows = new ArrayList<>(studentNumbers.size());
+        List<Long> inserts = new ArrayList<>();
+        List<Long> reactivations = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < studentNumbers.size(); i++) {
+            String studentNumber = studentNumbers.get(i);
+            BulkEnrollmentReport.Outcome outcome;
+            Long studentPk = studentPks.get(studentNumber);
+            if (!seen.add(studentNumber)) {
+                outcome = BulkEnrollmentReport.Outcome.DUPLICATE;
+            } else if (studentPk == null) {
+                outcome = BulkEnrollmentReport.Outcome.NOT_FOUND;
+            } else if (!enrollments.containsKey(studentPk)) {
+                inserts.add(studentPk);
+                outcome = BulkEnrollmentReport.Outcome.ADDED;
+            } else if ("ACTIVE".equals(enrollments.get(studentPk)[2])) {
+                outcome = BulkEnrollmentReport.Outcome.ALREADY_ENROLLED;
+            } else {
+                reactivations.add((Long) enrollments.get(studentPk)[0]);
+                outcome = BulkEnrollmentReport.Outcome.REACTIVATED;
+            }
+            rows.add(new BulkEnrollmentReport.Row(i + 1, studentNumber, outcome));
+        }
+
+        Timestamp joinTime = Timestamp.valueOf(LocalDateTime.now());
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ENROLLMENT_SQL, inserts, IN_CLAUSE_CHUNK, (ps, studentPk) -> {
+                ps.setLong(1, teachingClassId);
+                ps.setLong(2, studentPk);
+                ps.setTimestamp(3, joinTime);
+            });
+        }
+        if (!reactivations.isEmpty()) {
+            jdbcTemplate.batchUpdate(REACTIVATE_ENROLLMENT_SQL, reactivations, IN_CLAUSE_CHUNK,
+                    (ps, enrollmentId) -> ps.setLong(1, enrollmentId));
+        }
+
+        int changed = inserts.size() + reactivations.size();
+        if (changed > 0) {
+            signInAdmissionEngine.evictTeachingClass(teachingClassId);
+            rosterCountCache.evict(teachingClass.getTeacher().getId());
+            attendanceSessionSummaryService.onRosterChanged(teachingClass);
+        }
+
+        log.info("批量选课完成 - 教学班: {}, 新增: {}, 恢复: {}, 跳过: {}",
+                teachingClassId, inserts.size(), reactivations.size(), rows.size() - changed);
+        return new BulkEnrollmentReport(rows, inserts.size(), reactivations.size(), rows.size() - changed);
+    }
+
+    // 从 CSV 中取学号：每行第一列，跳过空行和表头
+    public static List<String> parseStudentNumbersCsv(String csv) {
+        List<String> studentNumbers = new ArrayList<>();
+        String[] lines = csv.replace("\uFEFF", "").split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String cell = lines[i].split("[,;\\t]", 2)[0].trim();
+            if (cell.length() >= 2 && cell.startsWith("\"") && cell.endsWith("\"")) {
+                cell = cell.substring(1, cell.length() - 1).trim();
+            }
+            if (cell.isEmpty()) {
+                continue;
+            }
+            if (i == 0 && (cell.equals("学号") || cell.equalsIgnoreCase("studentId") || cell.equalsIgnoreCase("student_id"))) {
+                continue;
+            }
+            studentNumbers.add(cell);
+        }
+        return studentNumbers;
+    }
+
+    // 从文本中取学号：以换行、逗号、分号或空白分隔
+    public static List<String> parseStudentNumbersText(String text) {
+        List<String> studentNumbers = new ArrayList<>();
+        for (String token : text.split("[\\s,;，；]+")) {
+            if (!token.isEmpty()) {
+                studentNumbers.add(token);
+            }
+        }
+        return studentNumbers;
     }
 
     @Transactional
@@ -116,33 +250,34 @@ public class TeachingClassService {
                 .findByTeachingClassAndStudent(teachingClass, student)
                 .orElseThrow(() -> new RuntimeException("学生不在该教学班中"));
 
+        if (!"ACTIVE".equals(tcs.getStatus())) {
+            return;
+        }
+
         tcs.setStatus("DROPPED");
         teachingClassStudentRepository.save(tcs);
+        signInAdmissionEngine.evictTeachingClass(teachingClassId);
+        rosterCountCache.evict(teachingClass.getTeacher().getId());
+        attendanceSessionSummaryService.onRosterChanged(teachingClass);
     }
 
-    public List<Student> searchStudentsNotInTeachingClass(TeachingClass teachingClass, String keyword) {
-        // 获取教学班中已有的学生
-        List<Student> existingStudents = getStudentsInTeachingClass(teachingClass);
-        List<Long> existingStudentIds = existingStudents.stream()
-                .map(Student::getId)
+    public Page<StudentSummary> searchStudentsNotInTeachingClass(TeachingClass teachingClass, String keyword, Pageable pageable) {
+        // 教学班中已有的学生（只取主键）
+        List<Long> existingStudentIds = teachingClassStudentRepository
+                .findActiveRosterKeysByTeachingClassId(teachingClass.getId()).stream()
+                .map(RosterKey::studentPk)
                 .collect(Collectors.toList());
 
-        // 根据关键词搜索学生
-        List<Student> allStudents;
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            // 这里需要根据实际情况实现搜索逻辑
-            allStudents = studentRepository.findAll().stream()
-                    .filter(s -> s.getName().contains(keyword) ||
-                            s.getStudentId().contains(keyword) ||
-                            s.getClassName().contains(keyword))
-                    .collect(Collectors.toList());
-        } else {
-            allStudents = studentRepository.findAll();
+        // 在搜索索引中匹配关键词并排除已有学生，只加载当前页
+        Page<Long> matches = studentSearchIndex.search(keyword, existingStudentIds, pageable);
+        if (matches.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, matches.getTotalElements());
         }
 
-        // 过滤掉已在教学班中的学生
-        return allStudents.stream()
-                .filter(s -> !existingStudentIds.contains(s.getId()))
-                .collect(Collectors.toList());
+        // IN 查询不保证顺序，按索引返回的顺序排回来
+        List<Long> ids = matches.getContent();
+        List<StudentSummary> students = new ArrayList<>(studentRepository.findSummariesByIdIn(ids));
+        students.sort(Comparator.comparingInt(s -> ids.indexOf(s.id())));
+        return new PageImpl<>(students, pageable, matches.getTotalElements());
     }
 }
\ No newline at end of file
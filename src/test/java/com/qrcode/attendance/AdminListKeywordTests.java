@@ -0,0 +1,69 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.dto.KeysetPage;
+import com.qrcode.attendance.entity.Student;
+import com.qrcode.attendance.repository.KeysetSpecifications;
+import com.qrcode.attendance.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 管理端列表的关键词在服务端匹配，对全部记录生效而不只是当前页
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class AdminListKeywordTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Test
+    void keywordMatchesRowsBeyondTheFirstPage() {
+        TestFixtures.Fixture fixture = fixtures.seed(30);
+        String last = fixture.studentNumbers().get(29);
+
+        KeysetPage<Student> page = studentRepository.findPage(
+                fixture.department().getId(), null, last.toLowerCase(), "studentId", false, null, 10);
+
+        assertThat(page.content()).extracting(Student::getStudentId).containsExactly(last);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    void keywordPagesThroughAllMatches() {
+        TestFixtures.Fixture fixture = fixtures.seed(30);
+        // 班级名 "测试0班" / "测试1班"，各 20 / 10 人
+        KeysetPage<Student> first = studentRepository.findPage(
+                fixture.department().getId(), null, "测试1班", "studentId", false, null, 6);
+        KeysetPage<Student> second = studentRepository.findPage(
+                fixture.department().getId(), null, "测试1班", "studentId", false, first.nextCursor(), 6);
+
+        assertThat(first.content()).hasSize(6);
+        assertThat(second.content()).hasSize(4);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(studentRepository.countGroupByStatus(fixture.department().getId(),
+                KeysetSpecifications.likePattern("测试1班")))
+                .singleElement()
+                .satisfies(row -> assertThat((Long) row[1]).isEqualTo(10L));
+    }
+
+    @Test
+    void wildcardsInKeywordAreLiteral() {
+        TestFixtures.Fixture fixture = fixtures.seed(3);
+
+        for (String keyword : List.of("%", "_", "!")) {
+            assertThat(studentRepository.findPage(
+                    fixture.department().getId(), null, keyword, "studentId", false, null, 10).content())
+                    .as("关键词 %s", keyword)
+                    .isEmpty();
+        }
+    }
+}
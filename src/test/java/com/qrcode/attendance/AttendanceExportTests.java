@@ -0,0 +1,170 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.service.AttendanceExportService;
+import com.qrcode.attendance.service.AttendanceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 签到记录导出：XLSX 是结构完整、可解析的工作簿，下载接口按请求设置异步超时
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class AttendanceExportTests {
+
+    private static final String SPREADSHEET_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private AttendanceExportService attendanceExportService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    void xlsxIsAWellFormedWorkbook() throws Exception {
+        TestFixtures.Fixture fixture = fixtures.seed(3);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        attendanceExportService.export(AttendanceExportService.Scope.teachingClass(fixture.teachingClass().getId()),
+                AttendanceExportService.Format.XLSX, out);
+
+        Map<String, Document> parts = readParts(out.toByteArray());
+        assertThat(parts).containsKeys("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/worksheets/sheet1.xml");
+        // 内容类型声明了工作簿和每个工作表
+        assertThat(attributes(parts.get("[Content_Types].xml"), "Override", "PartName"))
+                .containsExactlyInAnyOrder("/xl/workbook.xml", "/xl/worksheets/sheet1.xml");
+        // 工作簿引用的关系都指向实际存在的工作表
+        assertThat(attributes(parts.get("xl/workbook.xml"), "sheet", "name")).containsExactly("Sheet1");
+        for (String target : attributes(parts.get("xl/_rels/workbook.xml.rels"), "Relationship", "Target")) {
+            assertThat(parts).containsKey("xl/" + target);
+        }
+
+        List<List<String>> rows = rows(parts.get("xl/worksheets/sheet1.xml"));
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0)).startsWith("学期", "课程", "教学班", "签到标题");
+        assertThat(rows.subList(1, 3)).extracting(row -> row.get(5))
+                .containsExactlyInAnyOrder(fixture.studentNumbers().get(0), fixture.studentNumbers().get(2));
+        assertThat(rows.get(1).get(2)).isEqualTo(fixture.teachingClass().getClassName());
+    }
+
+    @Test
+    void downloadStreamsAsynchronously() throws Exception {
+        TestFixtures.Fixture fixture = fixtures.seed(2);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(1));
+        String url = "/teacher/teaching-classes/" + fixture.teachingClass().getId() + "/attendance/export";
+
+        MvcResult started = mockMvc.perform(get(url).param("format", "xlsx").session(fixture.httpSession()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", AttendanceExportService.Format.XLSX.getContentType()))
+                .andReturn();
+
+        assertThat(started.getRequest().getAsyncContext().getTimeout())
+                .isEqualTo(attendanceExportService.getTimeoutMillis());
+        assertThat(result.getResponse().getHeader("Content-Disposition")).startsWith("attachment");
+        List<List<String>> rows = rows(readParts(result.getResponse().getContentAsByteArray())
+                .get("xl/worksheets/sheet1.xml"));
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(1).get(5)).isEqualTo(fixture.studentNumbers().get(1));
+    }
+
+    @Test
+    void downloadRequiresOwnTeachingClass() throws Exception {
+        TestFixtures.Fixture owner = fixtures.seed(1);
+        TestFixtures.Fixture other = fixtures.seed(1);
+        String url = "/teacher/teaching-classes/" + owner.teachingClass().getId() + "/attendance/export";
+
+        mockMvc.perform(get(url).session(new MockHttpSession()))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get(url).session(other.httpSession()))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotFound());
+    }
+
+    private static Map<String, Document> readParts(byte[] xlsx) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Map<String, Document> parts = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                // 每个部件都必须是合法 XML，解析失败直接抛异常
+                byte[] content = zip.readAllBytes();
+                parts.put(entry.getName(), factory.newDocumentBuilder().parse(new ByteArrayInputStream(content)));
+            }
+        }
+        return parts;
+    }
+
+    private static List<String> attributes(Document document, String tag, String attribute) {
+        NodeList nodes = document.getElementsByTagNameNS("*", tag);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            values.add(((Element) nodes.item(i)).getAttribute(attribute));
+        }
+        return values;
+    }
+
+    private static List<List<String>> rows(Document sheet) {
+        NodeList rowNodes = sheet.getElementsByTagNameNS(SPREADSHEET_NS, "row");
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < rowNodes.getLength(); i++) {
+            Element row = (Element) rowNodes.item(i);
+            assertThat(row.getAttribute("r")).isEqualTo(Integer.toString(i + 1));
+            NodeList cellNodes = row.getElementsByTagNameNS(SPREADSHEET_NS, "c");
+            List<String> cells = new ArrayList<>();
+            for (int j = 0; j < cellNodes.getLength(); j++) {
+                cells.add(cellNodes.item(j).getTextContent());
+            }
+            rows.add(cells);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,108 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.dto.SignInResult;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.repository.AttendanceSessionSummaryRepository;
+import com.qrcode.attendance.service.AttendanceRecordWriteBehind;
+import com.qrcode.attendance.service.AttendanceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 签到组提交：确认给学生之前记录已经提交，失败会通知到签到请求
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class AttendanceRecordWriteBehindTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private AttendanceRecordWriteBehind attendanceRecordWriteBehind;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private AttendanceSessionSummaryRepository attendanceSessionSummaryRepository;
+
+    @Test
+    void signInIsCommittedBeforeItIsConfirmed() {
+        TestFixtures.Fixture fixture = fixtures.seed(3);
+        AttendanceSession session = fixtures.openSession(fixture);
+
+        SignInResult result = attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+
+        assertThat(result.recordId()).isNotNull();
+        assertThat(result.repeated()).isFalse();
+        // 不需要任何刷盘，返回时记录已经可见
+        assertThat(attendanceRecordRepository.findById(result.recordId())).isPresent();
+        assertThat(attendanceRecordWriteBehind.pendingCount()).isZero();
+    }
+
+    @Test
+    void concurrentSignInsAreAllPersistedOnce() throws Exception {
+        int rosterSize = 40;
+        TestFixtures.Fixture fixture = fixtures.seed(rosterSize);
+        AttendanceSession session = fixtures.openSession(fixture);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SignInResult>> futures = new ArrayList<>();
+            for (String studentNumber : fixture.studentNumbers()) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return attendanceService.signIn(session.getAttendanceCode(), studentNumber);
+                }));
+            }
+            start.countDown();
+
+            Set<Long> recordIds = new HashSet<>();
+            for (Future<SignInResult> future : futures) {
+                SignInResult result = future.get(30, TimeUnit.SECONDS);
+                assertThat(result.repeated()).isFalse();
+                recordIds.add(result.recordId());
+            }
+            assertThat(recordIds).hasSize(rosterSize);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(session.getId())).hasSize(rosterSize);
+        assertThat(attendanceSessionSummaryRepository.findById(session.getId()))
+                .hasValueSatisfying(summary -> assertThat(summary.getSignedCount()).isEqualTo(rosterSize));
+    }
+
+    @Test
+    void failedWriteIsReportedToTheCaller() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+
+        // 会话不存在，外键约束使写入失败（整批重试、逐条隔离后仍失败）
+        CompletableFuture<AttendanceRecordWriteBehind.WrittenRecord> result = attendanceRecordWriteBehind.submit(
+                new AttendanceRecordWriteBehind.PendingRecord(
+                        Long.MAX_VALUE, fixture.studentPks().get(0), LocalDateTime.now(), "PRESENT"));
+
+        assertThatThrownBy(() -> attendanceRecordWriteBehind.await(result))
+                .hasMessageContaining("签到保存失败");
+        assertThat(attendanceRecordWriteBehind.pendingCount()).isZero();
+    }
+}
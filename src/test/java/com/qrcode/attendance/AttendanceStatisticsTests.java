@@ -0,0 +1,129 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.entity.AttendanceSessionSummary;
+import com.qrcode.attendance.repository.AttendanceSessionSummaryRepository;
+import com.qrcode.attendance.service.AttendanceService;
+import com.qrcode.attendance.service.AttendanceSessionSummaryService;
+import com.qrcode.attendance.service.TeachingClassService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 签到统计口径：只统计教学班当前在读的学生
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class AttendanceStatisticsTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private TeachingClassService teachingClassService;
+    @Autowired
+    private AttendanceSessionSummaryService attendanceSessionSummaryService;
+    @Autowired
+    private AttendanceSessionSummaryRepository attendanceSessionSummaryRepository;
+
+    @Test
+    void countsAddUpToRosterSize() {
+        TestFixtures.Fixture fixture = fixtures.seed(5);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(1));
+
+        Map<String, Object> stats = attendanceService.getAttendanceStatistics(session.getId());
+
+        assertThat(stats).containsEntry("totalStudentCount", 5)
+                .containsEntry("presentCount", 2L)
+                .containsEntry("lateCount", 0L)
+                .containsEntry("absentCount", 3);
+        assertThat((double) stats.get("attendanceRate")).isEqualTo(40.0);
+        assertThat((List<?>) stats.get("detailedRecords")).hasSize(5);
+    }
+
+    @Test
+    void studentWhoDroppedAfterSigningInIsNotCounted() {
+        TestFixtures.Fixture fixture = fixtures.seed(4);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(1));
+
+        teachingClassService.removeStudentFromTeachingClass(fixture.teachingClass().getId(), fixture.studentPks().get(0));
+        Map<String, Object> stats = attendanceService.getAttendanceStatistics(session.getId());
+
+        // 退课学生的签到记录保留，但不计入本教学班的统计
+        assertThat(stats).containsEntry("totalStudentCount", 3)
+                .containsEntry("presentCount", 1L)
+                .containsEntry("absentCount", 2);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> details = (List<Map<String, Object>>) stats.get("detailedRecords");
+        assertThat(details).extracting(row -> row.get("studentId"))
+                .doesNotContain(fixture.studentNumbers().get(0));
+    }
+
+    @Test
+    void summaryFollowsDropAndReactivation() {
+        TestFixtures.Fixture fixture = fixtures.seed(4);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(1));
+        Long teachingClassId = fixture.teachingClass().getId();
+
+        // 退课后列表页的汇总与统计页一致
+        teachingClassService.removeStudentFromTeachingClass(teachingClassId, fixture.studentPks().get(0));
+        assertSummaryMatchesStatistics(session);
+        assertThat(summary(session).getSignedCount()).isEqualTo(1);
+        assertThat(summary(session).getRosterSize()).isEqualTo(3);
+
+        // 恢复选课后原来的签到重新计入
+        teachingClassService.addStudentToTeachingClass(teachingClassId, fixture.studentPks().get(0));
+        assertSummaryMatchesStatistics(session);
+        assertThat(summary(session).getSignedCount()).isEqualTo(2);
+
+        // 结束签到时校准，口径不变
+        attendanceService.endAttendanceSession(session.getId(), fixture.teacher().getId());
+        teachingClassService.removeStudentFromTeachingClass(teachingClassId, fixture.studentPks().get(1));
+        attendanceSessionSummaryService.reconcile(session);
+        assertSummaryMatchesStatistics(session);
+    }
+
+    @Test
+    void missingSummaryIsComputedWithoutWriting() {
+        TestFixtures.Fixture fixture = fixtures.seed(3);
+        AttendanceSession session = fixtures.openSession(fixture);
+        attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(2));
+        attendanceSessionSummaryRepository.deleteById(session.getId());
+
+        assertThat(summary(session).getSignedCount()).isEqualTo(1);
+        assertThat(summary(session).getRosterSize()).isEqualTo(3);
+        assertThat(attendanceSessionSummaryRepository.findById(session.getId())).isEmpty();
+
+        // 启动时补齐缺失的汇总行
+        attendanceSessionSummaryService.backfill();
+        assertThat(attendanceSessionSummaryRepository.findById(session.getId()))
+                .hasValueSatisfying(summary -> assertThat(summary.getSignedCount()).isEqualTo(1));
+    }
+
+    private AttendanceSessionSummary summary(AttendanceSession session) {
+        return attendanceSessionSummaryService.getSummaries(List.of(session)).get(session.getId());
+    }
+
+    private void assertSummaryMatchesStatistics(AttendanceSession session) {
+        Map<String, Object> stats = attendanceService.getAttendanceStatistics(session.getId());
+        AttendanceSessionSummary summary = summary(session);
+        assertThat(summary.getRosterSize()).isEqualTo(stats.get("totalStudentCount"));
+        assertThat((long) summary.getPresentCount()).isEqualTo(stats.get("presentCount"));
+        assertThat((long) summary.getLateCount()).isEqualTo(stats.get("lateCount"));
+        assertThat(summary.getAbsentCount()).isEqualTo(stats.get("absentCount"));
+    }
+}
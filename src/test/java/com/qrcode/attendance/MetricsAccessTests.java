@@ -0,0 +1,69 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.config.MetricsAccessFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// /actuator/prometheus 只对管理员会话和带抓取令牌的请求开放
+@SpringBootTest(properties = "app.metrics.scrape-token=test-scrape-token")
+@ActiveProfiles("test")
+class MetricsAccessTests {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        @SuppressWarnings("unchecked")
+        FilterRegistrationBean<MetricsAccessFilter> accessFilter =
+                context.getBean("metricsAccessFilter", FilterRegistrationBean.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilter(accessFilter.getFilter(), "/actuator/prometheus")
+                .build();
+    }
+
+    @Test
+    void anonymousScrapeIsRejected() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer wrong-token"))
+                .andExpect(status().isUnauthorized());
+        // 非管理员的登录会话也不行
+        MockHttpSession teacher = new MockHttpSession();
+        teacher.setAttribute("user", new Object());
+        teacher.setAttribute("userType", "TEACHER");
+        mockMvc.perform(get("/actuator/prometheus").session(teacher))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void scrapeTokenOrAdminSessionIsAccepted() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer test-scrape-token"))
+                .andExpect(status().isOk());
+
+        MockHttpSession admin = new MockHttpSession();
+        admin.setAttribute("user", new Object());
+        admin.setAttribute("userType", "ADMIN");
+        mockMvc.perform(get("/actuator/prometheus").session(admin))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void healthStaysOpen() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+}
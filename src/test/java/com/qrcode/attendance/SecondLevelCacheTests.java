@@ -0,0 +1,88 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.entity.Department;
+import com.qrcode.attendance.entity.TeachingClass;
+import com.qrcode.attendance.repository.DepartmentRepository;
+import com.qrcode.attendance.repository.TeachingClassRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 测试环境默认关闭二级缓存，这里单独打开：参考数据命中缓存，修改后不会读到旧值
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true"
+})
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class SecondLevelCacheTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private DepartmentRepository departmentRepository;
+    @Autowired
+    private TeachingClassRepository teachingClassRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void teachingClassIsReadFromCacheAndUpdatedOnSave() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        Long id = fixture.teachingClass().getId();
+        CacheRegionStatistics region = statistics.getCacheRegionStatistics("teaching-classes");
+
+        // 每次 findById 都是新的持久化上下文（没有外层事务），第二次只能来自二级缓存
+        teachingClassRepository.findById(id);
+        long hits = region.getHitCount();
+        long loads = statistics.getEntityLoadCount();
+        TeachingClass cached = teachingClassRepository.findById(id).orElseThrow();
+        assertThat(region.getHitCount()).isGreaterThan(hits);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(loads);
+
+        cached.setClassName("改名后的教学班");
+        teachingClassRepository.save(cached);
+
+        assertThat(teachingClassRepository.findById(id).orElseThrow().getClassName()).isEqualTo("改名后的教学班");
+    }
+
+    @Test
+    void departmentListComesFromQueryCacheUntilADepartmentChanges() {
+        Department department = fixtures.seed(1).department();
+        CacheRegionStatistics queryRegion = statistics.getCacheRegionStatistics("department-queries");
+
+        departmentRepository.findAllByOrderByName();
+        long hits = queryRegion.getHitCount();
+        long executions = statistics.getQueryExecutionCount();
+        departmentRepository.findAllByOrderByName();
+        assertThat(queryRegion.getHitCount()).isGreaterThan(hits);
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(executions);
+
+        // 修改院系后查询缓存失效，重新执行查询并读到新名称
+        department.setName(department.getName() + "（更名）");
+        departmentRepository.save(department);
+        long missesBefore = queryRegion.getMissCount();
+        List<Department> departments = departmentRepository.findAllByOrderByName();
+
+        assertThat(queryRegion.getMissCount()).isGreaterThan(missesBefore);
+        assertThat(departments).extracting(Department::getName).contains(department.getName());
+    }
+}
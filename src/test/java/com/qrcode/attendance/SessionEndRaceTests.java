@@ -0,0 +1,95 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.dto.SignInResult;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.service.AttendanceService;
+import com.qrcode.attendance.service.SignInAdmissionEngine;
+import com.qrcode.attendance.service.SignInRejectedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 结束签到与学生签到并发：结束之后不再接受签到，也不会留下重新加载的花名册
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class SessionEndRaceTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private SignInAdmissionEngine signInAdmissionEngine;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Test
+    void signInsRacingTheEndAreEitherRecordedOrRejected() throws Exception {
+        int rosterSize = 80;
+        TestFixtures.Fixture fixture = fixtures.seed(rosterSize);
+        AttendanceSession session = fixtures.openSession(fixture);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> confirmed = new HashSet<>();
+        int rejected = 0;
+        try {
+            List<Future<SignInResult>> signIns = new ArrayList<>();
+            for (String studentNumber : fixture.studentNumbers()) {
+                signIns.add(executor.submit(() -> {
+                    start.await();
+                    return attendanceService.signIn(session.getAttendanceCode(), studentNumber);
+                }));
+            }
+            Future<?> end = executor.submit(() -> {
+                start.await();
+                return attendanceService.endAttendanceSession(session.getId(), fixture.teacher().getId());
+            });
+            start.countDown();
+            end.get(30, TimeUnit.SECONDS);
+
+            for (Future<SignInResult> signIn : signIns) {
+                try {
+                    confirmed.add(signIn.get(30, TimeUnit.SECONDS).recordId());
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(SignInRejectedException.class);
+                    rejected++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 每个确认过的签到都已落库，被拒绝的没有留下记录
+        assertThat(confirmed.size() + rejected).isEqualTo(rosterSize);
+        assertThat(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(session.getId()))
+                .hasSize(confirmed.size());
+
+        // 结束之后：签到被拒绝，准入引擎不会为该会话重新加载花名册
+        int openSessions = signInAdmissionEngine.openSessionCount();
+        assertThatThrownBy(() -> attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0)))
+                .isInstanceOf(SignInRejectedException.class);
+        assertThat(signInAdmissionEngine.admit(session.getId(), fixture.teachingClass().getId(),
+                fixture.studentNumbers().get(0)).result())
+                .isEqualTo(SignInAdmissionEngine.Result.CLOSED);
+        assertThat(signInAdmissionEngine.openSessionCount()).isEqualTo(openSessions);
+    }
+}
@@ -0,0 +1,128 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.dto.SignInResult;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.service.AttendanceRecordWriteBehind;
+import com.qrcode.attendance.service.AttendanceService;
+import com.qrcode.attendance.service.SignInAdmissionEngine;
+import com.qrcode.attendance.service.SignInRejectedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// 重复签到：返回首次签到的记录，不归还也不重新占用首次提交的签到位；(会话, 学生) 在库中唯一
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class SignInIdempotencyTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private SignInAdmissionEngine signInAdmissionEngine;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockitoSpyBean
+    private AttendanceRecordWriteBehind attendanceRecordWriteBehind;
+
+    @Test
+    void repeatedSignInReturnsTheFirstRecord() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        AttendanceSession session = fixtures.openSession(fixture);
+        String studentNumber = fixture.studentNumbers().get(0);
+
+        SignInResult first = attendanceService.signIn(session.getAttendanceCode(), studentNumber);
+        SignInResult second = attendanceService.signIn(session.getAttendanceCode(), studentNumber);
+
+        assertThat(first.repeated()).isFalse();
+        assertThat(second.repeated()).isTrue();
+        assertThat(second.pending()).isFalse();
+        assertThat(second.recordId()).isEqualTo(first.recordId());
+        assertThat(second.signinTime()).isEqualTo(first.signinTime());
+        assertThat(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(session.getId())).hasSize(1);
+        verify(attendanceRecordWriteBehind, times(1)).submit(any());
+    }
+
+    @Test
+    void duplicateWhileFirstIsBeingWrittenIsPending() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        AttendanceSession session = fixtures.openSession(fixture);
+        Long studentPk = fixture.studentPks().get(0);
+        // 首次提交已占用签到位、记录还在写入线程中
+        signInAdmissionEngine.admit(session.getId(), fixture.teachingClass().getId(), fixture.studentNumbers().get(0));
+        LocalDateTime signinTime = LocalDateTime.now();
+        doReturn(new AttendanceRecordWriteBehind.PendingRecord(session.getId(), studentPk, signinTime, "PRESENT"))
+                .when(attendanceRecordWriteBehind).findInFlight(session.getId(), studentPk);
+
+        SignInResult duplicate = attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+
+        assertThat(duplicate.pending()).isTrue();
+        assertThat(duplicate.repeated()).isTrue();
+        assertThat(duplicate.recordId()).isNull();
+        assertThat(duplicate.signinTime()).isEqualTo(signinTime);
+        // 不等待写入，也不自行写入
+        verify(attendanceRecordWriteBehind, times(0)).awaitSession(any());
+        verify(attendanceRecordWriteBehind, times(0)).submit(any());
+    }
+
+    @Test
+    void duplicateDoesNotTakeOverTheFirstSlot() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        AttendanceSession session = fixtures.openSession(fixture);
+        String studentNumber = fixture.studentNumbers().get(0);
+        // 签到位被首次提交占用，但记录尚未交给写入线程
+        signInAdmissionEngine.admit(session.getId(), fixture.teachingClass().getId(), studentNumber);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> attendanceService.signIn(session.getAttendanceCode(), studentNumber))
+                    .isInstanceOfSatisfying(SignInRejectedException.class,
+                            e -> assertThat(e.getReason()).isEqualTo("pending"));
+        }
+        // 重复提交既没有归还签到位，也没有替首次提交写入记录
+        assertThat(signInAdmissionEngine.admit(session.getId(), fixture.teachingClass().getId(), studentNumber).result())
+                .isEqualTo(SignInAdmissionEngine.Result.ALREADY_SIGNED);
+        verify(attendanceRecordWriteBehind, times(0)).submit(any());
+        assertThat(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(session.getId())).isEmpty();
+    }
+
+    @Test
+    void uniqueKeyRejectsSecondRowAndWriterKeepsTheFirst() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        AttendanceSession session = fixtures.openSession(fixture);
+        Long studentPk = fixture.studentPks().get(0);
+
+        AttendanceRecordWriteBehind.WrittenRecord first = attendanceRecordWriteBehind.await(attendanceRecordWriteBehind.submit(
+                new AttendanceRecordWriteBehind.PendingRecord(session.getId(), studentPk, LocalDateTime.now(), "PRESENT")));
+        AttendanceRecordWriteBehind.WrittenRecord second = attendanceRecordWriteBehind.await(attendanceRecordWriteBehind.submit(
+                new AttendanceRecordWriteBehind.PendingRecord(session.getId(), studentPk, LocalDateTime.now().plusMinutes(10), "LATE")));
+
+        assertThat(first.inserted()).isTrue();
+        assertThat(second.inserted()).isFalse();
+        assertThat(second.id()).isEqualTo(first.id());
+        assertThat(second.status()).isEqualTo("PRESENT");
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "INSERT INTO attendance_records (attendance_session_id, student_id, signin_time, status) VALUES (?, ?, ?, ?)",
+                session.getId(), studentPk, LocalDateTime.now(), "PRESENT"))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(session.getId())).hasSize(1);
+    }
+}
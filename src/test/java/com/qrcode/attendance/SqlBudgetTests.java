@@ -0,0 +1,195 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.config.SqlBudget;
+import com.qrcode.attendance.config.SqlBudgetExceededException;
+import com.qrcode.attendance.config.SqlStatementCounter;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.DepartmentRepository;
+import com.qrcode.attendance.service.AttendanceService;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 关键页面和接口的 SQL 条数：既固定上限，也要求条数不随会话数、签到人数增长（N+1 回归在这里失败）
+@SpringBootTest
+@ActiveProfiles("test")
+@Import({TestFixtures.class, SqlBudgetTests.BudgetedQueries.class})
+class SqlBudgetTests {
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private BudgetedQueries budgetedQueries;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        @SuppressWarnings("unchecked")
+        FilterRegistrationBean<Filter> sqlFilter = context.getBean("sqlStatementMetricsFilter", FilterRegistrationBean.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(sqlFilter.getFilter())
+                .build();
+    }
+
+    @Test
+    void dashboardDoesNotGrowWithActiveSessions() throws Exception {
+        TestFixtures.Fixture few = fixtures.seed(10);
+        fixtures.openSessions(few, 1);
+        TestFixtures.Fixture many = fixtures.seed(10);
+        fixtures.openSessions(many, 8);
+
+        long fewCount = statementsOf(get("/teacher/dashboard").session(few.httpSession()));
+        long manyCount = statementsOf(get("/teacher/dashboard").session(many.httpSession()));
+
+        assertThat(fewCount).isLessThanOrEqualTo(6);
+        assertThat(manyCount).isEqualTo(fewCount);
+    }
+
+    @Test
+    void sessionListDoesNotGrowWithSessions() throws Exception {
+        TestFixtures.Fixture few = fixtures.seed(10);
+        fixtures.openSessions(few, 1);
+        TestFixtures.Fixture many = fixtures.seed(10);
+        fixtures.openSessions(many, 8);
+
+        long fewCount = statementsOf(get("/teacher/attendance/sessions")
+                .param("classId", few.teachingClass().getId().toString()).session(few.httpSession()));
+        long manyCount = statementsOf(get("/teacher/attendance/sessions")
+                .param("classId", many.teachingClass().getId().toString()).session(many.httpSession()));
+
+        assertThat(fewCount).isLessThanOrEqualTo(6);
+        assertThat(manyCount).isEqualTo(fewCount);
+    }
+
+    @Test
+    void sessionDetailsDoesNotGrowWithSignIns() throws Exception {
+        TestFixtures.Fixture few = fixtures.seed(40);
+        AttendanceSession fewSession = fixtures.openSessions(few, 1).get(0);
+        signIn(fewSession, few.studentNumbers().subList(0, 2));
+        TestFixtures.Fixture many = fixtures.seed(40);
+        AttendanceSession manySession = fixtures.openSessions(many, 1).get(0);
+        signIn(manySession, many.studentNumbers());
+
+        long fewCount = statementsOf(get("/teacher/attendance/sessions/{id}/details", fewSession.getId())
+                .session(few.httpSession()));
+        long manyCount = statementsOf(get("/teacher/attendance/sessions/{id}/details", manySession.getId())
+                .session(many.httpSession()));
+
+        assertThat(fewCount).isLessThanOrEqualTo(4);
+        assertThat(manyCount).isEqualTo(fewCount);
+    }
+
+    @Test
+    void qrCodeImageUsesOneQuery() throws Exception {
+        TestFixtures.Fixture fixture = fixtures.seed(5);
+        AttendanceSession session = fixtures.openSessions(fixture, 1).get(0);
+
+        long count = statementsOf(get("/teacher/attendance/sessions/{id}/qr-code.png", session.getId())
+                .session(fixture.httpSession()));
+
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void statisticsApiUsesOneQuery() throws Exception {
+        TestFixtures.Fixture fixture = fixtures.seed(30);
+        AttendanceSession session = fixtures.openSessions(fixture, 1).get(0);
+        signIn(session, fixture.studentNumbers().subList(0, 20));
+
+        long count = statementsOf(get("/attendance/statistics/{id}", session.getId()));
+
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void signInStaysWithinBudgetAndIsIdempotent() throws Exception {
+        TestFixtures.Fixture fixture = fixtures.seed(5);
+        AttendanceSession session = fixtures.openSessions(fixture, 1).get(0);
+        String studentNumber = fixture.studentNumbers().get(0);
+
+        long first = statementsOf(post("/attendance/signin")
+                .param("attendanceCode", session.getAttendanceCode())
+                .param("studentId", studentNumber));
+        // 重复提交返回首次签到的记录，只多一次按唯一索引的查询
+        long repeated = statementsOf(post("/attendance/signin")
+                .param("attendanceCode", session.getAttendanceCode())
+                .param("studentId", studentNumber));
+
+        assertThat(first).isLessThanOrEqualTo(1);
+        assertThat(repeated).isLessThanOrEqualTo(2);
+        assertThat(attendanceService.getAttendanceRecordsBySessionId(session.getId())).hasSize(1);
+    }
+
+    @Test
+    void methodOverItsBudgetFails() {
+        assertThatCode(() -> budgetedQueries.withinBudget()).doesNotThrowAnyException();
+        assertThatThrownBy(() -> budgetedQueries.overBudget())
+                .isInstanceOf(SqlBudgetExceededException.class)
+                .hasMessageContaining("overBudget")
+                .hasMessageContaining("2 > 1");
+    }
+
+    // 执行一次请求，返回期间经 Hibernate 执行的 SQL 条数（过滤器在请求开始时清零，请求在当前线程执行）
+    private long statementsOf(RequestBuilder request) throws Exception {
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(result -> {
+                    if (result.getModelAndView() != null && result.getModelAndView().getModel().containsKey("success")) {
+                        model().attribute("success", true).match(result);
+                    }
+                });
+        return SqlStatementCounter.current();
+    }
+
+    private void signIn(AttendanceSession session, List<String> studentNumbers) {
+        for (String studentNumber : studentNumbers) {
+            attendanceService.signIn(session.getAttendanceCode(), studentNumber);
+        }
+    }
+
+    // @SqlBudget 经由 Spring 代理生效，方法内每次 count 都是一条 SQL
+    @TestComponent
+    static class BudgetedQueries {
+
+        private final DepartmentRepository departmentRepository;
+
+        BudgetedQueries(DepartmentRepository departmentRepository) {
+            this.departmentRepository = departmentRepository;
+        }
+
+        @SqlBudget(1)
+        public long withinBudget() {
+            return departmentRepository.count();
+        }
+
+        @SqlBudget(1)
+        public long overBudget() {
+            return departmentRepository.count() + departmentRepository.count();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.dto.SignInResult;
+import com.qrcode.attendance.entity.AttendanceRecord;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.service.AttendanceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 学生最后签到时间由签到记录推导：取最新一条，取消后回退到上一次
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class StudentLastSigninTimeTests {
+
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AttendanceService attendanceService;
+    @Autowired
+    private AttendanceRecordRepository attendanceRecordRepository;
+
+    @Test
+    void derivedFromNewestRecord() {
+        TestFixtures.Fixture fixture = fixtures.seed(1);
+        Long studentPk = fixture.studentPks().get(0);
+        assertThat(attendanceService.getLastSigninTime(studentPk)).isNull();
+
+        List<AttendanceSession> sessions = fixtures.openSessions(fixture, 2);
+        LocalDateTime earlier = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        AttendanceRecord first = signInAt(sessions.get(0), fixture, earlier);
+        AttendanceRecord second = signInAt(sessions.get(1), fixture, earlier.plusHours(2));
+
+        assertThat(attendanceService.getLastSigninTime(studentPk)).isEqualTo(second.getSigninTime());
+
+        // 教师取消最新一次签到后回退到上一次
+        attendanceRecordRepository.delete(second);
+        assertThat(attendanceService.getLastSigninTime(studentPk)).isEqualTo(first.getSigninTime());
+    }
+
+    private AttendanceRecord signInAt(AttendanceSession session, TestFixtures.Fixture fixture, LocalDateTime signinTime) {
+        SignInResult result = attendanceService.signIn(session.getAttendanceCode(), fixture.studentNumbers().get(0));
+        AttendanceRecord record = attendanceRecordRepository.findById(result.recordId()).orElseThrow();
+        record.setSigninTime(signinTime);
+        return attendanceRecordRepository.save(record);
+    }
+}
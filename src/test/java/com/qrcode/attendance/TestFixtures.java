@@ -0,0 +1,116 @@
+package com.qrcode.attendance;
+
+import com.qrcode.attendance.entity.*;
+import com.qrcode.attendance.repository.*;
+import com.qrcode.attendance.service.AttendanceService;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 集成测试的数据准备：院系 + 教师 + 教学班 + 在读学生，以及已开始的签到会话
+@TestComponent
+public class TestFixtures {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final DepartmentRepository departmentRepository;
+    private final TeacherRepository teacherRepository;
+    private final StudentRepository studentRepository;
+    private final TeachingClassRepository teachingClassRepository;
+    private final TeachingClassStudentRepository teachingClassStudentRepository;
+    private final AttendanceService attendanceService;
+
+    public TestFixtures(DepartmentRepository departmentRepository,
+                        TeacherRepository teacherRepository,
+                        StudentRepository studentRepository,
+                        TeachingClassRepository teachingClassRepository,
+                        TeachingClassStudentRepository teachingClassStudentRepository,
+                        AttendanceService attendanceService) {
+        this.departmentRepository = departmentRepository;
+        this.teacherRepository = teacherRepository;
+        this.studentRepository = studentRepository;
+        this.teachingClassRepository = teachingClassRepository;
+        this.teachingClassStudentRepository = teachingClassStudentRepository;
+        this.attendanceService = attendanceService;
+    }
+
+    public record Fixture(Department department, Teacher teacher, TeachingClass teachingClass,
+                          List<String> studentNumbers, List<Long> studentPks, MockHttpSession httpSession) {
+    }
+
+    public Fixture seed(int rosterSize) {
+        int seq = SEQUENCE.incrementAndGet();
+
+        Department department = new Department();
+        department.setName("测试学院" + seq);
+        department = departmentRepository.save(department);
+
+        Teacher teacher = new Teacher();
+        teacher.setUsername("test-teacher-" + seq);
+        teacher.setPassword("password");
+        teacher.setName("测试教师" + seq);
+        teacher.setDepartment(department);
+        teacher.setTeacherId("TT" + seq);
+        teacher = teacherRepository.save(teacher);
+
+        TeachingClass teachingClass = new TeachingClass();
+        teachingClass.setClassName("测试教学班" + seq);
+        teachingClass.setCourseName("测试课程");
+        teachingClass.setSemester("2024春");
+        teachingClass.setTeacher(teacher);
+        teachingClass = teachingClassRepository.save(teachingClass);
+
+        List<String> studentNumbers = new ArrayList<>(rosterSize);
+        List<Long> studentPks = new ArrayList<>(rosterSize);
+        for (int i = 0; i < rosterSize; i++) {
+            String studentNumber = String.format("T%03d%05d", seq, i);
+            Student student = new Student();
+            student.setUsername(studentNumber);
+            student.setPassword("password");
+            student.setName("学生" + i);
+            student.setDepartment(department);
+            student.setStudentId(studentNumber);
+            student.setClassName("测试" + (i / 20) + "班");
+            student.setEnrollmentYear("2024");
+            student = studentRepository.save(student);
+
+            TeachingClassStudent enrolment = new TeachingClassStudent();
+            enrolment.setTeachingClass(teachingClass);
+            enrolment.setStudent(student);
+            teachingClassStudentRepository.save(enrolment);
+            studentNumbers.add(studentNumber);
+            studentPks.add(student.getId());
+        }
+
+        MockHttpSession httpSession = new MockHttpSession();
+        httpSession.setAttribute("user", teacher);
+        httpSession.setAttribute("userType", "TEACHER");
+        return new Fixture(department, teacher, teachingClass, studentNumbers, studentPks, httpSession);
+    }
+
+    public List<AttendanceSession> openSessions(Fixture fixture, int count) {
+        List<AttendanceSession> sessions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sessions.add(openSession(fixture, "第" + (i + 1) + "次课签到"));
+        }
+        return sessions;
+    }
+
+    public AttendanceSession openSession(Fixture fixture) {
+        return openSession(fixture, "测试签到");
+    }
+
+    private AttendanceSession openSession(Fixture fixture, String title) {
+        AttendanceSession session = new AttendanceSession();
+        session.setTeachingClass(fixture.teachingClass());
+        session.setTitle(title);
+        session.setStartTime(LocalDateTime.now());
+        session.setEndTime(LocalDateTime.now().plusHours(2));
+        AttendanceSession created = attendanceService.createAttendanceSession(session);
+        return attendanceService.startAttendanceSession(created.getId(), fixture.teacher().getId());
+    }
+}
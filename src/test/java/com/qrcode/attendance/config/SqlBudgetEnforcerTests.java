@@ -0,0 +1,28 @@
+package com.qrcode.attendance.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlBudgetEnforcerTests {
+
+    @Test
+    void failsWhenBudgetExceededInFailMode() {
+        SqlBudgetEnforcer enforcer = new SqlBudgetEnforcer(10, true);
+
+        assertThatCode(() -> enforcer.check("dashboard", 3, 3)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> enforcer.check("dashboard", 4, 3))
+                .isInstanceOf(SqlBudgetExceededException.class)
+                .hasMessageContaining("dashboard");
+        assertThatThrownBy(() -> enforcer.checkRequest("GET", "/teacher/dashboard", 11))
+                .isInstanceOf(SqlBudgetExceededException.class);
+    }
+
+    @Test
+    void onlyLogsWhenNotInFailMode() {
+        SqlBudgetEnforcer enforcer = new SqlBudgetEnforcer(10, false);
+
+        assertThatCode(() -> enforcer.check("dashboard", 100, 3)).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,155 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceCodeAllocatorTests {
+
+    private static final int CODE_SPACE = 900000;
+
+    private AttendanceSessionRepository attendanceSessionRepository;
+
+    @BeforeEach
+    void setUp() {
+        attendanceSessionRepository = mock(AttendanceSessionRepository.class);
+        when(attendanceSessionRepository.findLiveAttendanceCodes()).thenReturn(List.of());
+        when(attendanceSessionRepository.findAttendanceCodesEndedSince(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void allocatesEveryCodeExactlyOncePerCycle() {
+        AttendanceCodeAllocator allocator = allocator(24);
+
+        Set<String> codes = allocateAll(allocator);
+
+        assertThat(codes).hasSize(CODE_SPACE);
+        assertThat(codes).allMatch(code -> code.length() == 6 && !code.startsWith("0"));
+        assertThatThrownBy(allocator::allocate).hasMessageContaining("签到码已用尽");
+    }
+
+    @Test
+    void skipsCodesHeldByLiveSessions() {
+        when(attendanceSessionRepository.findLiveAttendanceCodes()).thenReturn(List.of("123456", "654321"));
+        AttendanceCodeAllocator allocator = allocator(24);
+
+        Set<String> codes = allocateAll(allocator);
+
+        assertThat(codes).hasSize(CODE_SPACE - 2).doesNotContain("123456", "654321");
+    }
+
+    @Test
+    void releasedCodeIsNotReissuedDuringCooldown() {
+        AttendanceCodeAllocator allocator = allocator(24);
+        String code = allocator.allocate();
+        allocateAll(allocator);
+
+        allocator.release(code);
+
+        assertThatThrownBy(allocator::allocate).hasMessageContaining("签到码已用尽");
+        assertThat(allocator.getMetrics()).containsEntry("coolingCount", 1);
+    }
+
+    @Test
+    void releasedCodeIsReissuedAfterCooldown() {
+        AttendanceCodeAllocator allocator = allocator(0);
+        String code = allocator.allocate();
+        allocateAll(allocator);
+
+        allocator.release(code);
+
+        assertThat(allocator.allocate()).isEqualTo(code);
+    }
+
+    @Test
+    void restartKeepsRecentlyEndedCodesCooling() {
+        // 置换参数重新生成，但刚结束的会话的签到码仍不会发出
+        when(attendanceSessionRepository.findAttendanceCodesEndedSince(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{"123456", LocalDateTime.now().minusHours(1)}));
+        AttendanceCodeAllocator allocator = allocator(24);
+
+        Set<String> codes = allocateAll(allocator);
+
+        assertThat(codes).hasSize(CODE_SPACE - 1).doesNotContain("123456");
+    }
+
+    @Test
+    void restartCooldownRunsFromEndTime() {
+        // 冷却 1 小时：30 分钟前结束的仍在冷却，90 分钟前结束的已经可以再发出
+        LocalDateTime now = LocalDateTime.now();
+        when(attendanceSessionRepository.findAttendanceCodesEndedSince(any())).thenReturn(List.of(
+                new Object[]{"123456", now.minusMinutes(30)},
+                new Object[]{"654321", now.minusMinutes(90)}));
+        AttendanceCodeAllocator allocator = allocator(1);
+
+        assertThat(allocator.getMetrics()).containsEntry("coolingCount", 1);
+        assertThat(allocateAll(allocator)).hasSize(CODE_SPACE - 1)
+                .doesNotContain("123456")
+                .contains("654321");
+    }
+
+    @Test
+    void rolledBackAllocationIsReturnedImmediately() {
+        AttendanceCodeAllocator allocator = allocator(24);
+        TransactionSynchronizationManager.initSynchronization();
+
+        allocator.allocate();
+        assertThat(allocator.getMetrics()).containsEntry("heldCount", 1);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(allocator.getMetrics()).containsEntry("heldCount", 0).containsEntry("coolingCount", 0);
+    }
+
+    @Test
+    void releaseInsideTransactionWaitsForCommit() {
+        AttendanceCodeAllocator allocator = allocator(24);
+        String code = allocator.allocate();
+        TransactionSynchronizationManager.initSynchronization();
+
+        allocator.release(code);
+        assertThat(allocator.getMetrics()).containsEntry("heldCount", 1);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(allocator.getMetrics()).containsEntry("heldCount", 0).containsEntry("coolingCount", 1);
+    }
+
+    private AttendanceCodeAllocator allocator(long cooldownHours) {
+        AttendanceCodeAllocator allocator = new AttendanceCodeAllocator(attendanceSessionRepository, cooldownHours);
+        allocator.init();
+        return allocator;
+    }
+
+    private static Set<String> allocateAll(AttendanceCodeAllocator allocator) {
+        Set<String> codes = new HashSet<>();
+        while (true) {
+            try {
+                String code = allocator.allocate();
+                assertThat(codes.add(code)).as("重复发放 %s", code).isTrue();
+            } catch (RuntimeException e) {
+                return codes;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.AttendanceRosterRow;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AttendanceLiveServiceTests {
+
+    private static final Long SESSION_ID = 1L;
+
+    private AttendanceRecordRepository attendanceRecordRepository;
+    private AttendanceLiveService liveService;
+
+    @BeforeEach
+    void setUp() {
+        attendanceRecordRepository = mock(AttendanceRecordRepository.class);
+        liveService = new AttendanceLiveService(attendanceRecordRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        liveService.shutdown();
+    }
+
+    @Test
+    void eventsArrivingDuringLoadAreCountedOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(attendanceRecordRepository.findRosterWithRecordsBySessionId(anyLong())).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            // S001 的签到在查询前已提交，查询结果里已经有它
+            return List.of(
+                    row("S001", "PRESENT"),
+                    row("S002", null),
+                    row("S003", "LATE"),
+                    row("S004", null));
+        });
+
+        CompletableFuture<SseEmitter> subscription = CompletableFuture.supplyAsync(() -> liveService.subscribe(SESSION_ID));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(liveService.getTotals(SESSION_ID)).isNull();
+
+        // 初始化期间：S001 的事件晚于查询到达，S002 新签到，S003 被取消
+        liveService.onSignIn(SESSION_ID, "S001", "PRESENT", LocalDateTime.now());
+        liveService.onSignIn(SESSION_ID, "S002", "LATE", LocalDateTime.now());
+        liveService.onCancel(SESSION_ID, "S003");
+        release.countDown();
+        subscription.get(5, TimeUnit.SECONDS);
+
+        assertThat(liveService.getTotals(SESSION_ID))
+                .containsEntry("totalStudentCount", 4)
+                .containsEntry("presentCount", 1L)
+                .containsEntry("lateCount", 1L)
+                .containsEntry("absentCount", 2L);
+    }
+
+    @Test
+    void repeatedEventsDoNotDoubleCount() {
+        when(attendanceRecordRepository.findRosterWithRecordsBySessionId(anyLong()))
+                .thenReturn(List.of(row("S001", null), row("S002", null)));
+        liveService.subscribe(SESSION_ID);
+
+        liveService.onSignIn(SESSION_ID, "S001", "PRESENT", LocalDateTime.now());
+        liveService.onSignIn(SESSION_ID, "S001", "PRESENT", LocalDateTime.now());
+        liveService.onCancel(SESSION_ID, "S002");
+
+        assertThat(liveService.getTotals(SESSION_ID))
+                .containsEntry("presentCount", 1L)
+                .containsEntry("absentCount", 1L);
+    }
+
+    @Test
+    void countersAreDroppedWhenLastSubscriberLeaves() throws Exception {
+        when(attendanceRecordRepository.findRosterWithRecordsBySessionId(anyLong()))
+                .thenReturn(List.of(row("S001", null)));
+        SseEmitter emitter = liveService.subscribe(SESSION_ID);
+        assertThat(liveService.liveSessionCount()).isEqualTo(1);
+
+        // 浏览器断开后，下一次推送失败时移除订阅者
+        emitter.complete();
+        liveService.onSignIn(SESSION_ID, "S001", "PRESENT", LocalDateTime.now());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (liveService.liveSessionCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(liveService.liveSessionCount()).isZero();
+    }
+
+    @Test
+    void concurrentEventsArriveInCountOrder() throws Exception {
+        int students = 200;
+        List<AttendanceRosterRow> rows = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            rows.add(row("S" + i, null));
+        }
+        when(attendanceRecordRepository.findRosterWithRecordsBySessionId(anyLong())).thenReturn(rows);
+        RecordingEmitter emitter = new RecordingEmitter();
+        liveService.subscribe(SESSION_ID, emitter);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < students; i++) {
+                String studentId = "S" + i;
+                executor.execute(() -> liveService.onSignIn(SESSION_ID, studentId, "PRESENT", LocalDateTime.now()));
+            }
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.presentCounts.size() < students + 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 快照之后每条签到事件的出勤数依次加一，不会有旧计数晚于新计数到达
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i <= students; i++) {
+            expected.add(i);
+        }
+        assertThat(emitter.presentCounts).containsExactlyElementsOf(expected);
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<Long> presentCounts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof Map<?, ?> data) {
+                    presentCounts.add((Long) data.get("presentCount"));
+                }
+            }
+        }
+    }
+
+    private static AttendanceRosterRow row(String studentId, String status) {
+        return new AttendanceRosterRow(null, studentId, "学生" + studentId, "测试班",
+                status, status == null ? null : LocalDateTime.now());
+    }
+}
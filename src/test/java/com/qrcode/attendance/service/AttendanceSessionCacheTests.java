@@ -0,0 +1,81 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.AttendanceSessionSnapshot;
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.entity.TeachingClass;
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttendanceSessionCacheTests {
+
+    private static final String CODE = "ABC123";
+
+    private AttendanceSessionRepository attendanceSessionRepository;
+    private AttendanceSessionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        attendanceSessionRepository = mock(AttendanceSessionRepository.class);
+        cache = new AttendanceSessionCache(attendanceSessionRepository);
+    }
+
+    @Test
+    void missLoadsAndCachesLiveSession() {
+        when(attendanceSessionRepository.findFirstByAttendanceCodeOrderByIdDesc(CODE))
+                .thenReturn(Optional.of(session("STARTED")));
+
+        assertThat(cache.getByAttendanceCode(CODE).getStatus()).isEqualTo("STARTED");
+        assertThat(cache.getByAttendanceCode(CODE).getStatus()).isEqualTo("STARTED");
+        verify(attendanceSessionRepository, times(1)).findFirstByAttendanceCodeOrderByIdDesc(CODE);
+    }
+
+    @Test
+    void staleReadDoesNotOverwriteNewerSnapshot() {
+        // 读库时还是 CREATED，返回之前会话已开始并放入缓存
+        when(attendanceSessionRepository.findFirstByAttendanceCodeOrderByIdDesc(CODE)).thenAnswer(invocation -> {
+            cache.put(session("STARTED"));
+            return Optional.of(session("CREATED"));
+        });
+
+        AttendanceSessionSnapshot snapshot = cache.getByAttendanceCode(CODE);
+
+        assertThat(snapshot.getStatus()).isEqualTo("STARTED");
+        assertThat(cache.getByAttendanceCode(CODE).getStatus()).isEqualTo("STARTED");
+    }
+
+    @Test
+    void putReplacesCachedSnapshot() {
+        when(attendanceSessionRepository.findFirstByAttendanceCodeOrderByIdDesc(CODE))
+                .thenReturn(Optional.of(session("CREATED")));
+        cache.getByAttendanceCode(CODE);
+
+        cache.put(session("STARTED"));
+        assertThat(cache.getByAttendanceCode(CODE).getStatus()).isEqualTo("STARTED");
+
+        cache.put(session("ENDED"));
+        assertThat(cache.size()).isZero();
+    }
+
+    private static AttendanceSession session(String status) {
+        TeachingClass teachingClass = new TeachingClass();
+        teachingClass.setId(10L);
+        AttendanceSession session = new AttendanceSession();
+        session.setId(1L);
+        session.setTeachingClass(teachingClass);
+        session.setAttendanceCode(CODE);
+        session.setStatus(status);
+        session.setStartTime(LocalDateTime.now().minusMinutes(1));
+        session.setEndTime(LocalDateTime.now().plusMinutes(30));
+        return session;
+    }
+}
@@ -0,0 +1,109 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.entity.AttendanceSession;
+import com.qrcode.attendance.repository.AttendanceSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttendanceSessionSchedulerTests {
+
+    private AttendanceService attendanceService;
+    private AttendanceSessionScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        AttendanceSessionRepository attendanceSessionRepository = mock(AttendanceSessionRepository.class);
+        when(attendanceSessionRepository.findLiveSessionTimes()).thenReturn(List.of());
+        attendanceService = mock(AttendanceService.class);
+        ObjectProvider<AttendanceService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(attendanceService);
+        scheduler = new AttendanceSessionScheduler(attendanceSessionRepository, provider, true, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void scheduledInsideTransactionOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        scheduler.scheduleEnd(session(1L, "STARTED"));
+        scheduler.scheduleStart(session(2L, "CREATED"));
+        assertThat(scheduler.pendingCount()).isZero();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(scheduler.pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rolledBackSessionIsNotScheduled() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        scheduler.scheduleEnd(session(1L, "STARTED"));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(scheduler.pendingCount()).isZero();
+    }
+
+    @Test
+    void failedSessionIsRetriedWithoutBlockingOthers() {
+        when(attendanceService.endDueSession(1L))
+                .thenThrow(new RuntimeException("数据库不可用"))
+                .thenReturn(true);
+        when(attendanceService.endDueSession(2L)).thenReturn(true);
+        scheduler.start();
+
+        // 两个会话同时到点
+        scheduler.scheduleEnd(session(1L, "STARTED"));
+        scheduler.scheduleEnd(session(2L, "STARTED"));
+
+        verify(attendanceService, timeout(5000).times(2)).endDueSession(1L);
+        verify(attendanceService, times(1)).endDueSession(2L);
+        verify(attendanceService, never()).startDueSession(1L);
+        assertThat(scheduler.pendingCount()).isZero();
+    }
+
+    @Test
+    void duplicateTasksRunOnce() {
+        when(attendanceService.startDueSession(1L)).thenReturn(true);
+        AttendanceSession session = session(1L, "CREATED");
+        scheduler.scheduleStart(session);
+        scheduler.scheduleStart(session);
+
+        scheduler.start();
+
+        verify(attendanceService, timeout(5000)).startDueSession(1L);
+        verify(attendanceService, times(1)).startDueSession(1L);
+    }
+
+    private static AttendanceSession session(Long id, String status) {
+        AttendanceSession session = new AttendanceSession();
+        session.setId(id);
+        session.setStatus(status);
+        session.setStartTime(LocalDateTime.now().minusMinutes(1));
+        session.setEndTime(LocalDateTime.now().minusSeconds(1));
+        return session;
+    }
+}
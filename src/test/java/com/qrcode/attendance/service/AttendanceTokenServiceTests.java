@@ -0,0 +1,86 @@
+package com.qrcode.attendance.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttendanceTokenServiceTests {
+
+    private static final Long SESSION_ID = 7L;
+
+    @Test
+    void enabledWithoutSecretFailsAtStartup() {
+        assertThatThrownBy(() -> tokenService(true, ""))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.attendance.token.secret");
+    }
+
+    @Test
+    void disabledWithoutSecretAcceptsAnything() {
+        AttendanceTokenService tokens = tokenService(false, "");
+
+        assertThat(tokens.issue(SESSION_ID)).isNull();
+        assertThat(tokens.validate(SESSION_ID, null)).isTrue();
+    }
+
+    @Test
+    void tokenSurvivesRestartWithSameSecret() {
+        String token = tokenService(true, "secret").issue(SESSION_ID);
+
+        // 重启后用同一密钥重新初始化，投影中的二维码仍然有效
+        assertThat(tokenService(true, "secret").validate(SESSION_ID, token)).isTrue();
+        assertThat(tokenService(true, "other-secret").validate(SESSION_ID, token)).isFalse();
+    }
+
+    @Test
+    void tokenIsBoundToSession() {
+        AttendanceTokenService tokens = tokenService(true, "secret");
+        String token = tokens.issue(SESSION_ID);
+
+        assertThat(tokens.validate(SESSION_ID, token)).isTrue();
+        assertThat(tokens.validate(SESSION_ID + 1, token)).isFalse();
+        assertThat(tokens.validate(SESSION_ID, null)).isFalse();
+        assertThat(tokens.validate(SESSION_ID, "")).isFalse();
+    }
+
+    @Test
+    void formTokenOutlivesTheQrCodeSlot() {
+        AttendanceTokenService tokens = tokenService(true, "secret");
+        String formToken = tokens.issueFormToken(SESSION_ID);
+
+        // 表单令牌只看自己的过期时间，不受二维码时间片轮换影响
+        assertThat(tokens.validateFormToken(SESSION_ID, formToken)).isTrue();
+        assertThat(tokens.validateFormToken(SESSION_ID + 1, formToken)).isFalse();
+        assertThat(tokens.validateFormToken(SESSION_ID, null)).isFalse();
+        assertThat(tokens.validateFormToken(SESSION_ID, "abc")).isFalse();
+        // 改动过期时间后签名不再匹配
+        long expiresAt = Long.parseLong(formToken.substring(0, formToken.indexOf('.')));
+        assertThat(tokens.validateFormToken(SESSION_ID, (expiresAt + 3600) + formToken.substring(formToken.indexOf('.'))))
+                .isFalse();
+        // 二维码令牌不能当表单令牌用
+        assertThat(tokens.validateFormToken(SESSION_ID, tokens.issue(SESSION_ID))).isFalse();
+    }
+
+    @Test
+    void expiredFormTokenIsRejected() {
+        AttendanceTokenService tokens = tokenService(true, "secret", -1L);
+
+        assertThat(tokens.validateFormToken(SESSION_ID, tokens.issueFormToken(SESSION_ID))).isFalse();
+    }
+
+    private static AttendanceTokenService tokenService(boolean enabled, String secret) {
+        return tokenService(enabled, secret, 300L);
+    }
+
+    private static AttendanceTokenService tokenService(boolean enabled, String secret, long formTtlSeconds) {
+        AttendanceTokenService tokens = new AttendanceTokenService();
+        ReflectionTestUtils.setField(tokens, "enabled", enabled);
+        ReflectionTestUtils.setField(tokens, "rotateSeconds", 30L);
+        ReflectionTestUtils.setField(tokens, "formTtlSeconds", formTtlSeconds);
+        ReflectionTestUtils.setField(tokens, "secret", secret);
+        tokens.init();
+        return tokens;
+    }
+}
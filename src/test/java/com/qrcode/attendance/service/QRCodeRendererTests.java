@@ -0,0 +1,87 @@
+package com.qrcode.attendance.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QRCodeRendererTests {
+
+    private static final String CONTENT = "http://localhost:8080/student/sign-in?code=123456&t=abcdef";
+
+    @Test
+    void pngMatchesMatrixPixelForPixel() throws Exception {
+        // 宽度不是 8 的倍数，覆盖行尾不满一个字节的情况
+        for (int size : new int[]{100, 257, 300}) {
+            BitMatrix matrix = encode(size);
+            assertPixelsEqual(matrix, QRCodeRenderer.toPng(matrix));
+        }
+    }
+
+    @Test
+    void pngDecodesBackToContent() throws Exception {
+        BufferedImage image = read(QRCodeRenderer.toPng(encode(300)));
+
+        String decoded = new MultiFormatReader()
+                .decode(new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))))
+                .getText();
+
+        assertThat(decoded).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void incompressibleMatrixGrowsTheCompressBuffer() throws Exception {
+        // 随机像素几乎无法压缩，压缩结果超过初始缓冲区
+        BitMatrix matrix = new BitMatrix(517, 517);
+        Random random = new Random(42);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (random.nextBoolean()) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+
+        assertPixelsEqual(matrix, QRCodeRenderer.toPng(matrix));
+        // 复用增长后的缓冲区渲染小图
+        BitMatrix small = encode(100);
+        assertPixelsEqual(small, QRCodeRenderer.toPng(small));
+    }
+
+    private static BitMatrix encode(int size) throws Exception {
+        return new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.MARGIN, 1));
+    }
+
+    private static void assertPixelsEqual(BitMatrix matrix, byte[] png) throws IOException {
+        BufferedImage image = read(png);
+        assertThat(image.getWidth()).isEqualTo(matrix.getWidth());
+        assertThat(image.getHeight()).isEqualTo(matrix.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                int expected = matrix.get(x, y) ? 0x000000 : 0xFFFFFF;
+                assertThat(image.getRGB(x, y) & 0xFFFFFF).as("像素 (%d, %d)", x, y).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static BufferedImage read(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertThat(image).as("ImageIO 无法解析输出").isNotNull();
+        return image;
+    }
+}
@@ -0,0 +1,75 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.repository.TeachingClassStudentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RosterCountCacheTests {
+
+    private static final Long TEACHER_ID = 1L;
+    private static final Long TEACHING_CLASS_ID = 10L;
+
+    private TeachingClassStudentRepository teachingClassStudentRepository;
+    private RosterCountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        teachingClassStudentRepository = mock(TeachingClassStudentRepository.class);
+        cache = new RosterCountCache(teachingClassStudentRepository);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadThatAlreadySawTheChangeIsNotCountedTwice() {
+        // 选课事务提交前，另一个请求的加载已经读到了 31 人
+        TransactionSynchronizationManager.initSynchronization();
+        when(teachingClassStudentRepository.countActiveStudentsGroupByTeachingClass(TEACHER_ID))
+                .thenReturn(rows(31L));
+        assertThat(cache.getCount(TEACHER_ID, TEACHING_CLASS_ID)).isEqualTo(31);
+
+        cache.evict(TEACHER_ID);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // 提交后重新加载，而不是在 31 上再加 1
+        assertThat(cache.getCount(TEACHER_ID, TEACHING_CLASS_ID)).isEqualTo(31);
+        verify(teachingClassStudentRepository, times(2)).countActiveStudentsGroupByTeachingClass(TEACHER_ID);
+    }
+
+    @Test
+    void evictionWaitsForCommit() {
+        when(teachingClassStudentRepository.countActiveStudentsGroupByTeachingClass(TEACHER_ID))
+                .thenReturn(rows(30L), rows(31L));
+        assertThat(cache.getCount(TEACHER_ID, TEACHING_CLASS_ID)).isEqualTo(30);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.evict(TEACHER_ID);
+        assertThat(cache.getCount(TEACHER_ID, TEACHING_CLASS_ID)).isEqualTo(30);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(cache.getCount(TEACHER_ID, TEACHING_CLASS_ID)).isEqualTo(31);
+    }
+
+    private static List<Object[]> rows(long count) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{TEACHING_CLASS_ID, count});
+        return rows;
+    }
+}
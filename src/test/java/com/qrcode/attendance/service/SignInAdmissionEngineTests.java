@@ -0,0 +1,170 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.dto.RosterKey;
+import com.qrcode.attendance.repository.AttendanceRecordRepository;
+import com.qrcode.attendance.repository.TeachingClassStudentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SignInAdmissionEngineTests {
+
+    private static final Long SESSION_ID = 1L;
+    private static final Long TEACHING_CLASS_ID = 10L;
+
+    private TeachingClassStudentRepository teachingClassStudentRepository;
+    private AttendanceRecordRepository attendanceRecordRepository;
+    private AttendanceRecordWriteBehind attendanceRecordWriteBehind;
+    private SignInAdmissionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        teachingClassStudentRepository = mock(TeachingClassStudentRepository.class);
+        attendanceRecordRepository = mock(AttendanceRecordRepository.class);
+        when(teachingClassStudentRepository.findActiveRosterKeysByTeachingClassId(TEACHING_CLASS_ID)).thenReturn(List.of(
+                new RosterKey(101L, "S001"),
+                new RosterKey(102L, "S002"),
+                new RosterKey(103L, "S003")));
+        when(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(anyLong())).thenReturn(List.of());
+        attendanceRecordWriteBehind = mock(AttendanceRecordWriteBehind.class);
+        when(attendanceRecordWriteBehind.findInFlightStudentPks(anyLong())).thenReturn(List.of());
+        engine = new SignInAdmissionEngine(teachingClassStudentRepository, attendanceRecordRepository,
+                attendanceRecordWriteBehind);
+    }
+
+    @Test
+    void admitsEnrolledStudentsOnce() {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001"))
+                .isEqualTo(new SignInAdmissionEngine.Admission(SignInAdmissionEngine.Result.ACCEPTED, 101L));
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001"))
+                .isEqualTo(new SignInAdmissionEngine.Admission(SignInAdmissionEngine.Result.ALREADY_SIGNED, 101L));
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "X999").result())
+                .isEqualTo(SignInAdmissionEngine.Result.NOT_ENROLLED);
+    }
+
+    @Test
+    void releasedSlotCanBeTakenAgain() {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+        engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S002");
+
+        engine.release(SESSION_ID, 102L);
+
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S002").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ACCEPTED);
+    }
+
+    @Test
+    void reloadRestoresSignedStudentsFromDatabase() {
+        when(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(SESSION_ID)).thenReturn(List.of(103L));
+
+        // 没有 open 过（如应用重启），第一次准入时按需加载
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S003").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ALREADY_SIGNED);
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ACCEPTED);
+        assertThat(engine.openSessionCount()).isEqualTo(1);
+
+        engine.evictTeachingClass(TEACHING_CLASS_ID);
+        assertThat(engine.openSessionCount()).isZero();
+        engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S002");
+        verify(teachingClassStudentRepository, times(2)).findActiveRosterKeysByTeachingClassId(TEACHING_CLASS_ID);
+    }
+
+    @Test
+    void reloadKeepsSignInsStillBeingWritten() {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+        engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001");
+        engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S002");
+        // S001 已提交，S002 还在写入线程中
+        when(attendanceRecordRepository.findStudentIdsByAttendanceSessionId(SESSION_ID)).thenReturn(List.of(101L));
+        when(attendanceRecordWriteBehind.findInFlightStudentPks(SESSION_ID)).thenReturn(List.of(102L));
+
+        // 花名册变动后重新加载
+        engine.evictTeachingClass(TEACHING_CLASS_ID);
+
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ALREADY_SIGNED);
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S002").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ALREADY_SIGNED);
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S003").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ACCEPTED);
+    }
+
+    @Test
+    void closedSessionIsNotReloaded() {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+
+        engine.close(SESSION_ID);
+
+        // 结束事务提交前会话缓存仍是 STARTED，准入在这里被拒绝，也不会重新加载花名册
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result())
+                .isEqualTo(SignInAdmissionEngine.Result.CLOSED);
+        assertThat(engine.openSessionCount()).isZero();
+        verify(teachingClassStudentRepository, times(1)).findActiveRosterKeysByTeachingClassId(TEACHING_CLASS_ID);
+    }
+
+    @Test
+    void rolledBackCloseAdmitsAgain() {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.close(SESSION_ID);
+            assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result())
+                    .isEqualTo(SignInAdmissionEngine.Result.CLOSED);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result())
+                .isEqualTo(SignInAdmissionEngine.Result.ACCEPTED);
+    }
+
+    @Test
+    void concurrentAdmissionsOfSameStudentAcceptOnlyOne() throws Exception {
+        engine.open(SESSION_ID, TEACHING_CLASS_ID);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SignInAdmissionEngine.Result>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return engine.admit(SESSION_ID, TEACHING_CLASS_ID, "S001").result();
+                }));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<SignInAdmissionEngine.Result> result : results) {
+                if (result.get(5, TimeUnit.SECONDS) == SignInAdmissionEngine.Result.ACCEPTED) {
+                    accepted++;
+                }
+            }
+            assertThat(accepted).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
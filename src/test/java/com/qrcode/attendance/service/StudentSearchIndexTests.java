@@ -0,0 +1,152 @@
+package com.qrcode.attendance.service;
+
+import com.qrcode.attendance.entity.Student;
+import com.qrcode.attendance.repository.StudentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StudentSearchIndexTests {
+
+    private StudentRepository studentRepository;
+    private StudentSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        studentRepository = mock(StudentRepository.class);
+        when(studentRepository.findSearchKeys()).thenReturn(List.of(
+                new Object[]{1L, "2024001", "张三", "计科1班"},
+                new Object[]{2L, "2024002", "李四", "计科2班"},
+                new Object[]{3L, "2024003", "张三丰", "软件1班"},
+                new Object[]{4L, "2024004", "王五", "软件2班"},
+                new Object[]{5L, "2024005", "Alice", "计科1班"}));
+        index = new StudentSearchIndex(studentRepository);
+        index.init();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void matchesSingleCharactersAndBigrams() {
+        assertThat(search("张")).containsExactly(1L, 3L);
+        assertThat(search("张三")).containsExactly(1L, 3L);
+        assertThat(search("三丰")).containsExactly(3L);
+        assertThat(search("计科1")).containsExactly(1L, 5L);
+        assertThat(search("202400")).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(search("2024003")).containsExactly(3L);
+        // 不区分大小写
+        assertThat(search("ALI")).containsExactly(5L);
+        assertThat(search("不存在")).isEmpty();
+    }
+
+    @Test
+    void doesNotMatchAcrossFields() {
+        // "张三" 的姓名结尾 + 班级开头："三计" 只在拼接文本里相邻
+        assertThat(search("三计")).isEmpty();
+        assertThat(search("01张")).isEmpty();
+    }
+
+    @Test
+    void emptyKeywordReturnsEveryone() {
+        assertThat(search("")).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(search(null)).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void excludesGivenStudents() {
+        Page<Long> page = index.search("张", Set.of(1L, 99L), PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).containsExactly(3L);
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void pagesThroughVerifiedMatches() {
+        Page<Long> first = index.search("2024", Set.of(2L), PageRequest.of(0, 2));
+        Page<Long> second = index.search("2024", Set.of(2L), PageRequest.of(1, 2));
+        Page<Long> beyond = index.search("2024", Set.of(2L), PageRequest.of(2, 2));
+
+        assertThat(first.getContent()).containsExactly(1L, 3L);
+        assertThat(second.getContent()).containsExactly(4L, 5L);
+        assertThat(beyond.getContent()).isEmpty();
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(first.getTotalPages()).isEqualTo(2);
+    }
+
+    @Test
+    void editedStudentKeepsItsPosition() {
+        index.index(student(2L, "2024002", "李四海", "计科2班"));
+
+        assertThat(search("")).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(search("四海")).containsExactly(2L);
+        // 旧内容的 gram 不再命中
+        index.index(student(2L, "2024002", "赵六", "计科2班"));
+        assertThat(search("李四")).isEmpty();
+        assertThat(index.docCapacity()).isEqualTo(5);
+    }
+
+    @Test
+    void removedStudentIsNotFound() {
+        index.remove(3L);
+
+        assertThat(search("张")).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    void churnDoesNotGrowDocIdsWithoutBound() {
+        for (long pk = 100; pk < 5100; pk++) {
+            index.index(student(pk, "T" + pk, "临时" + pk, "临时班"));
+            index.remove(pk);
+        }
+        index.index(student(6L, "2025001", "新同学", "软件1班"));
+
+        assertThat(index.docCapacity()).isLessThan(2000);
+        // 压缩后存活文档保持原有顺序
+        assertThat(search("")).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(search("软件1")).containsExactly(3L, 6L);
+    }
+
+    @Test
+    void changesInsideTransactionApplyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.index(student(6L, "2024006", "钱七", "软件1班"));
+        index.remove(1L);
+        assertThat(search("钱七")).isEmpty();
+        assertThat(search("2024001")).containsExactly(1L);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(search("钱七")).containsExactly(6L);
+        assertThat(search("2024001")).isEmpty();
+    }
+
+    private List<Long> search(String keyword) {
+        return index.search(keyword, Set.of(), PageRequest.of(0, 100)).getContent();
+    }
+
+    private static Student student(Long id, String studentId, String name, String className) {
+        Student student = new Student();
+        student.setId(id);
+        student.setStudentId(studentId);
+        student.setName(name);
+        student.setClassName(className);
+        return student;
+    }
+}